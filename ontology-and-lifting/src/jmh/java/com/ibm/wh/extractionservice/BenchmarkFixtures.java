@@ -0,0 +1,131 @@
+package com.ibm.wh.extractionservice;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity;
+import com.ibm.wh.extractionservice.externalentity.ExternalEntityFilesRepository;
+import com.ibm.wh.extractionservice.externalentity.lifting.LiftingConfiguration;
+import com.ibm.wh.extractionservice.ontology.DomainOntology;
+
+/**
+ * Builds the objects under benchmark the same way the application context does, from `application.yaml` and the
+ * shipped resources. Benchmarks are expected to run from the project directory (as `./gradlew jmh` does).
+ */
+public class BenchmarkFixtures {
+
+    private static final String SAMPLE_LIFTING_CONFIGURATION = "docs/samples/sample-lifting-configuration.json";
+    private static final String SAMPLE_PROCEDURES_CSV_HEADER = "hcpcscpt,hcpcscpt abbreviated title,hcpcscpt medium title,hcpcscpt long title,Procgroup code,Procgroup title,CSC,ATG,ProcGroup Source";
+
+    private static final Properties applicationProperties = loadApplicationProperties();
+
+    private BenchmarkFixtures() {
+    }
+
+    private static Properties loadApplicationProperties() {
+        YamlPropertiesFactoryBean yamlPropertiesFactory = new YamlPropertiesFactoryBean();
+        yamlPropertiesFactory.setResources(new ClassPathResource("application.yaml"));
+        return yamlPropertiesFactory.getObject();
+    }
+
+    public static String getProperty(String key) {
+        String value = applicationProperties.getProperty(key);
+        if (value == null) throw new IllegalStateException(String.format("Property [%s] not found in application.yaml", key));
+        return value.trim();
+    }
+
+    public static List<String> getListProperty(String key) {
+        return Arrays.stream(getProperty(key).split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    public static ObjectMapper objectMapper() {
+        // same defaults of the ObjectMapper configured by Spring Boot
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    public static ExternalEntityFilesRepository externalEntityRepository() {
+        return new ExternalEntityFilesRepository(getListProperty("external-data.input.files"), objectMapper());
+    }
+
+    public static DomainOntology.Builder domainOntologyBuilder(Collection<ExternalEntity> externalEntities) {
+        return new DomainOntology.Builder(getListProperty("ontology.input.files"), getProperty("ontology.input.files.syntax"), getProperty("ontology.namespace"))
+                .withExternalEntities(externalEntities)
+                .withParentBenefitRuleClassUri(getProperty("ontology.benefit-rule.class.uri"))
+                .withDisplayNamePropertyUri(getProperty("ontology.annotation.display-name.uri"))
+                .withClaimValuePropertyUri(getProperty("ontology.annotation.claim-value.uri"))
+                .withIsNegatedPropertyUri(getProperty("ontology.annotation.is-negative-property.uri"))
+                .withAnnotatedAsPropertyUri(getProperty("ontology.annotation.annotated-as.uri"))
+                .withAffirmativeActionPropertyUri(getProperty("ontology.annotation.affirmative-action.uri"))
+                .withNegativeActionPropertyUri(getProperty("ontology.annotation.negative-action.uri"))
+                .withSurfaceFormPropertyUri(getProperty("ontology.annotation.surface-form.uri"))
+                .withExtractionPatternPropertyUri(getProperty("ontology.annotation.extraction-pattern.uri"))
+                .withDefaultValuePropertyUri(getProperty("ontology.annotation.default-value.uri"))
+                .withPolicyClassUri(getProperty("ontology.policy.class.uri"))
+                .withHasComplianceRulePropertyTagUri(getProperty("ontology.annotation.has-compliance-rule.uri"))
+                .withNormalisationStages(Collections.emptyList());
+    }
+
+    public static DomainOntology domainOntology() {
+        return domainOntologyBuilder(externalEntityRepository().findAll()).build();
+    }
+
+    public static LiftingConfiguration sampleLiftingConfiguration(int parallelism) {
+        try {
+            ObjectMapper objectMapper = objectMapper();
+            ObjectNode configuration = (ObjectNode) objectMapper.readTree(new File(SAMPLE_LIFTING_CONFIGURATION));
+            configuration.put("parallelism", parallelism);
+            return objectMapper.treeToValue(configuration, LiftingConfiguration.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a csv with the columns of `docs/samples/sample-procedures.csv`. Codes are repeated once every three rows,
+     * so that duplicated entities are merged, and some titles are quoted and span multiple lines.
+     */
+    public static Path writeSyntheticProceduresCsv(int rows) {
+        try {
+            Path csv = Files.createTempFile("synthetic-procedures-", ".csv");
+            csv.toFile().deleteOnExit();
+            int distinctCodes = Math.max(1, rows * 2 / 3);
+            try (BufferedWriter writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+                writer.write(SAMPLE_PROCEDURES_CSV_HEADER);
+                writer.write("\r\n");
+                for (int row = 0; row < rows; row++) {
+                    int code = row % distinctCodes;
+                    int group = 5000 + code % 97;
+                    String title = code % 10 == 0
+                            ? String.format("\"Procedure %d, \"\"special\"\"\nsecond line\"", code)
+                            : String.format("Procedure %d", code);
+                    writer.write(String.format("D%07d,Proc %d,Procedure %d medium,%s,%d,group %d,DENTAL,DENTAL,Chapter Headings\r\n",
+                            code, row, code, title, group, group));
+                }
+            }
+            return csv;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
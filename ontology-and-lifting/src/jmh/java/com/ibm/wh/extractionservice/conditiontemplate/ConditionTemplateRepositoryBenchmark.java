@@ -0,0 +1,60 @@
+package com.ibm.wh.extractionservice.conditiontemplate;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.ibm.wh.extractionservice.BenchmarkFixtures;
+import com.ibm.wh.extractionservice.conditiontemplate.value.CandidateValueRepository;
+import com.ibm.wh.extractionservice.externalentity.ExternalEntityRepository;
+import com.ibm.wh.extractionservice.ontology.DomainOntology;
+
+/**
+ * Computes the condition templates of the domain ontology built from the shipped resources, resolving the candidate
+ * values from scratch or reusing the ones already resolved for the same version of the ontology. The gc profiler
+ * reports the memory allocated by each construction.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConditionTemplateRepositoryBenchmark {
+
+    private ExternalEntityRepository externalEntityRepository;
+    private DomainOntology domainOntology;
+    private CandidateValueRepository resolvedCandidateValueRepository;
+
+    @Setup
+    public void setUp() {
+        externalEntityRepository = BenchmarkFixtures.externalEntityRepository();
+        domainOntology = BenchmarkFixtures.domainOntologyBuilder(externalEntityRepository.findAll()).build();
+        resolvedCandidateValueRepository = new CandidateValueRepository(externalEntityRepository, domainOntology);
+        new ConditionTemplateRepository(resolvedCandidateValueRepository, domainOntology).close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        resolvedCandidateValueRepository.close();
+    }
+
+    // the repositories are closed, otherwise their listeners pile up on the ontology and slow down later changes
+    @Benchmark
+    public ConditionTemplateRepository construct() {
+        CandidateValueRepository candidateValueRepository = new CandidateValueRepository(externalEntityRepository, domainOntology);
+        ConditionTemplateRepository conditionTemplateRepository = new ConditionTemplateRepository(candidateValueRepository, domainOntology);
+        conditionTemplateRepository.close();
+        candidateValueRepository.close();
+        return conditionTemplateRepository;
+    }
+
+    @Benchmark
+    public ConditionTemplateRepository constructWithResolvedCandidateValues() {
+        ConditionTemplateRepository conditionTemplateRepository = new ConditionTemplateRepository(resolvedCandidateValueRepository, domainOntology);
+        conditionTemplateRepository.close();
+        return conditionTemplateRepository;
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.ibm.wh.extractionservice.externalentity;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ibm.wh.extractionservice.BenchmarkFixtures;
+
+/**
+ * Loads the external entities listed in `external-data.input.files`.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExternalEntityFilesRepositoryBenchmark {
+
+    private List<String> externalEntitiesFiles;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        externalEntitiesFiles = BenchmarkFixtures.getListProperty("external-data.input.files");
+        objectMapper = BenchmarkFixtures.objectMapper();
+    }
+
+    @Benchmark
+    public ExternalEntityFilesRepository initialise() {
+        return new ExternalEntityFilesRepository(externalEntitiesFiles, objectMapper);
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.ibm.wh.extractionservice.externalentity.lifting;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ibm.wh.extractionservice.BenchmarkFixtures;
+import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity;
+
+/**
+ * Lifts a synthetic csv with the columns of `docs/samples/sample-procedures.csv` using
+ * `docs/samples/sample-lifting-configuration.json`.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MINUTES)
+public class LiftingBenchmark {
+
+    private static final String ENTITIES_TAG = "benchmark";
+
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private Path csv;
+    private LiftingConfiguration configuration;
+    private LiftingService liftingService;
+
+    @Setup
+    public void setUp() throws IOException {
+        csv = BenchmarkFixtures.writeSyntheticProceduresCsv(rows);
+        configuration = BenchmarkFixtures.sampleLiftingConfiguration(parallelism);
+        liftingService = new LiftingService(BenchmarkFixtures.objectMapper(),
+                Integer.parseInt(BenchmarkFixtures.getProperty("external-data.lifting.max-entities-in-memory")),
+                Integer.parseInt(BenchmarkFixtures.getProperty("external-data.lifting.parallelism")));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        liftingService.close();
+        Files.deleteIfExists(csv);
+    }
+
+    @Benchmark
+    public Collection<ExternalEntity> liftEntities() throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(csv))) {
+            return liftingService.liftEntities(inputStream, ENTITIES_TAG, configuration);
+        }
+    }
+
+    @Benchmark
+    public void liftEntitiesAsStream(Blackhole blackhole) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(csv))) {
+            liftingService.liftEntities(inputStream, ENTITIES_TAG, configuration, blackhole::consume);
+        }
+    }
+
+}
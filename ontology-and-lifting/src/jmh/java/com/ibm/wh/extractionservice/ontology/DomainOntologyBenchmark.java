@@ -0,0 +1,34 @@
+package com.ibm.wh.extractionservice.ontology;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.ibm.wh.extractionservice.BenchmarkFixtures;
+import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity;
+
+/**
+ * Builds the domain ontology from `ontology.input.files` and the external entities of `external-data.input.files`.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MINUTES)
+public class DomainOntologyBenchmark {
+
+    private Collection<ExternalEntity> externalEntities;
+
+    @Setup
+    public void setUp() {
+        externalEntities = BenchmarkFixtures.externalEntityRepository().findAll();
+    }
+
+    @Benchmark
+    public DomainOntology build() {
+        return BenchmarkFixtures.domainOntologyBuilder(externalEntities).build();
+    }
+
+}
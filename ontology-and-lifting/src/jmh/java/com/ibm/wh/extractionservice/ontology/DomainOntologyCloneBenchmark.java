@@ -0,0 +1,88 @@
+package com.ibm.wh.extractionservice.ontology;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.ontology.OntClass;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.ibm.wh.extractionservice.BenchmarkFixtures;
+
+/**
+ * Compares full clones of the domain ontology with layered clones, when creating them, when using them as a
+ * scratch ontology for a few changes, and when reading them afterwards, so that the cost of the indexes and the
+ * annotations of the clones is measured too.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DomainOntologyCloneBenchmark {
+
+    private DomainOntology domainOntology;
+    private Resource scratchResource;
+    private Property scratchProperty;
+
+    @Setup
+    public void setUp() {
+        domainOntology = BenchmarkFixtures.domainOntology();
+        scratchResource = ResourceFactory.createResource(domainOntology.getNamespace() + "benchmark_scratch_resource");
+        scratchProperty = RDFS.label;
+    }
+
+    @Benchmark
+    public DomainOntology createClone() {
+        return domainOntology.createClone();
+    }
+
+    @Benchmark
+    public DomainOntology createLayeredClone() {
+        return domainOntology.createLayeredClone();
+    }
+
+    @Benchmark
+    public boolean createCloneAndChange() {
+        return change(domainOntology.createClone());
+    }
+
+    @Benchmark
+    public boolean createLayeredCloneAndChange() {
+        DomainOntology clone = domainOntology.createLayeredClone();
+        boolean changed = change(clone);
+        clone.discard();
+        return changed;
+    }
+
+    @Benchmark
+    public int createCloneChangeAndRead() {
+        DomainOntology clone = domainOntology.createClone();
+        change(clone);
+        return read(clone);
+    }
+
+    @Benchmark
+    public int createLayeredCloneChangeAndRead() {
+        DomainOntology clone = domainOntology.createLayeredClone();
+        change(clone);
+        int read = read(clone);
+        clone.discard();
+        return read;
+    }
+
+    private boolean change(DomainOntology clone) {
+        clone.getOntModel().add(scratchResource, scratchProperty, "scratch");
+        return clone.getOntModel().contains(scratchResource, scratchProperty);
+    }
+
+    private int read(DomainOntology clone) {
+        OntClass benefitRuleClass = clone.getParentBenefitRuleClass();
+        return clone.getAllClassesConnectedWithClass(benefitRuleClass).size()
+                + clone.getDisplayName(benefitRuleClass).map(String::length).orElse(0);
+    }
+
+}
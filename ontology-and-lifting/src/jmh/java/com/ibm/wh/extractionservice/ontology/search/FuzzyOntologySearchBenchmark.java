@@ -0,0 +1,46 @@
+package com.ibm.wh.extractionservice.ontology.search;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.ibm.wh.extractionservice.BenchmarkFixtures;
+
+/**
+ * Latency of the approximate surface form lookup over the lexicon of the shipped external entities
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FuzzyOntologySearchBenchmark {
+
+    @Param({"limited oral eval", "canal root", "x - rays"})
+    private String query;
+
+    private FuzzyOntologySearch fuzzyOntologySearch;
+
+    @Setup
+    public void setUp() {
+        fuzzyOntologySearch = new FuzzyOntologySearch(BenchmarkFixtures.domainOntology(), 0.5);
+    }
+
+    @Benchmark
+    public List<OntologySearchResult> search() {
+        return fuzzyOntologySearch.search(query, 10);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fuzzyOntologySearch.close();
+    }
+
+}
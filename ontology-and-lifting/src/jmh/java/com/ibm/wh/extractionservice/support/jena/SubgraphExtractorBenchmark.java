@@ -0,0 +1,65 @@
+package com.ibm.wh.extractionservice.support.jena;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.TripleBoundary;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.rdf.model.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ibm.wh.extractionservice.BenchmarkFixtures;
+
+/**
+ * Extraction of the subgraphs of all the subjects of the domain ontology, one root at a time into new models as the
+ * callers of {@link SubgraphExtractor#extract(org.apache.jena.rdf.model.Model, Resource, boolean)} do, and all the roots in a single visit
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SubgraphExtractorBenchmark {
+
+    private OntModel model;
+    private List<Resource> roots;
+    private List<Node> rootNodes;
+    private TripleBoundary boundary;
+
+    @Setup
+    public void setUp() {
+        model = BenchmarkFixtures.domainOntology().getOntModel();
+        roots = model.listSubjects().toList();
+        rootNodes = roots.stream().map(Resource::asNode).collect(Collectors.toList());
+        boundary = SubgraphExtractor.STOP_AT_REIFIED_STATEMENT_SOURCE.asTripleBoundary(model);
+    }
+
+    @Benchmark
+    public void extractEachIntoModel(Blackhole blackhole) {
+        for (Resource root : roots) blackhole.consume(SubgraphExtractor.extract(model, root, true));
+    }
+
+    @Benchmark
+    public void extractEachTriples(Blackhole blackhole) {
+        for (Node root : rootNodes) blackhole.consume(SubgraphExtractor.extractTriples(model.getGraph(), root, boundary, true));
+    }
+
+    @Benchmark
+    public List<Triple> extractAllTriples() {
+        return SubgraphExtractor.extractTriples(model.getGraph(), rootNodes, boundary, true, false);
+    }
+
+    @Benchmark
+    public List<Triple> extractAllTriplesInParallel() {
+        return SubgraphExtractor.extractTriples(model.getGraph(), rootNodes, boundary, true, true);
+    }
+
+}
@@ -56,6 +56,8 @@ public class DomainOntologyConfiguration {
     private String parentBenefitRuleClassUri;
     @Value("${ontology.policy.class.uri}")
     private String policyClassUri;
+    @Value("${ontology.snapshot.directory:}")
+    private String snapshotDirectory;
 
     @Bean
     public DomainOntology domainOntology(
@@ -77,6 +79,7 @@ public class DomainOntologyConfiguration {
                 .withPolicyClassUri(policyClassUri)
                 .withHasComplianceRulePropertyTagUri(hasComplianceRulePropertyTagUri)
                 .withNormalisationStages(normalisationStages)
+                .withSnapshotDirectory(snapshotDirectory)
                 .build();
     }
 
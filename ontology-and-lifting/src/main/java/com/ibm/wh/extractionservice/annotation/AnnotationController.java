@@ -0,0 +1,67 @@
+package com.ibm.wh.extractionservice.annotation;
+
+import java.io.InputStream;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ibm.wh.extractionservice.support.NdjsonWriter;
+
+import io.swagger.annotations.ApiOperation;
+
+@RestController
+public class AnnotationController {
+
+    public static final String ENDPOINT__POST_ANNOTATIONS = "/annotations";
+    public static final String ENDPOINT__POST_ANNOTATIONS_AS_NDJSON = "/annotations/stream";
+    public static final String ENDPOINT__POST_DOCUMENT_ANNOTATIONS_AS_NDJSON = "/annotations/document-stream";
+
+    private final AnnotationService annotationService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public AnnotationController(AnnotationService annotationService, ObjectMapper objectMapper) {
+        this.annotationService = annotationService;
+        this.objectMapper = objectMapper;
+    }
+
+    @ApiOperation(value = "annotate - Find the surface forms of the ontology resources in a batch of texts.",
+            notes = "Input a JSON array of texts, e.g. sentences, to return for each of them the longest non-overlapping " +
+                    "surface forms found, with their character offsets and the URIs of the resources they belong to.")
+    @PostMapping(path = ENDPOINT__POST_ANNOTATIONS, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<List<SurfaceFormMatch>> annotate(@RequestBody List<String> texts) {
+        return annotationService.annotate(texts);
+    }
+
+    @ApiOperation(value = "annotateAsNdjson - Stream sentences to annotate and stream their annotations back as newline-delimited JSON.",
+            notes = "Same as " + ENDPOINT__POST_ANNOTATIONS + ", but the sentences are read as they arrive, one {\"id\": ..., \"text\": ...} " +
+                    "per line, and annotated in parallel. The annotations of each sentence are written, with its id, as soon as " +
+                    "they are available, in the same order of the sentences.")
+    @PostMapping(path = ENDPOINT__POST_ANNOTATIONS_AS_NDJSON, consumes = NdjsonWriter.MEDIA_TYPE_VALUE, produces = NdjsonWriter.MEDIA_TYPE_VALUE)
+    public StreamingResponseBody annotateAsNdjson(InputStream sentencesAsNdjson) {
+        return outputStream -> {
+            try (MappingIterator<Sentence> sentences = objectMapper.readerFor(Sentence.class).readValues(sentencesAsNdjson);
+                 NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream)) {
+                annotationService.annotate(sentences, writer::write);
+            }
+        };
+    }
+
+    @ApiOperation(value = "annotateDocumentAsNdjson - Annotate a whole document and stream the annotations of its sentences back as newline-delimited JSON.",
+            notes = "The plain text document is split in sentences, identified by their position starting from 0, that are annotated " +
+                    "in parallel as in " + ENDPOINT__POST_ANNOTATIONS_AS_NDJSON + ". Offsets are relative to the document.")
+    @PostMapping(path = ENDPOINT__POST_DOCUMENT_ANNOTATIONS_AS_NDJSON, consumes = MediaType.TEXT_PLAIN_VALUE, produces = NdjsonWriter.MEDIA_TYPE_VALUE)
+    public StreamingResponseBody annotateDocumentAsNdjson(@RequestBody String document) {
+        return outputStream -> {
+            try (NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream)) {
+                annotationService.annotateDocument(document, writer::write);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.ibm.wh.extractionservice.annotation;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.jena.ontology.OntModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.ibm.wh.extractionservice.ontology.DomainOntology;
+import com.ibm.wh.extractionservice.support.OrderedBatchExecutor;
+import com.ibm.wh.extractionservice.support.jena.ModelCache;
+
+@Service
+public class AnnotationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationService.class);
+
+    // sentences annotated by the same task, so that scheduling costs little compared to matching
+    private static final int SENTENCES_PER_TASK = 256;
+
+    private final DomainOntology domainOntology;
+    // compiled again when surface forms are added to or removed from the ontology
+    private final ModelCache<SurfaceFormMatcher> surfaceFormMatcher;
+    private final OrderedBatchExecutor executor;
+
+    @Autowired
+    public AnnotationService(
+            DomainOntology domainOntology,
+            @Value("${annotation.batch.parallelism:0}") int parallelism
+    ) {
+        this.domainOntology = domainOntology;
+        this.surfaceFormMatcher = new ModelCache<>(
+                statement -> statement.getPredicate().equals(domainOntology.getSurfaceFormProperty()),
+                this::compileSurfaceFormMatcher);
+        this.executor = new OrderedBatchExecutor(parallelism);
+        // compiled at startup rather than at the first request
+        getSurfaceFormMatcher();
+    }
+
+    /**
+     * Finds the longest non-overlapping surface forms of the ontology resources in each text
+     *
+     * @return the matches of each text, in the same order of the texts
+     */
+    public List<List<SurfaceFormMatch>> annotate(List<String> texts) {
+        SurfaceFormMatcher matcher = getSurfaceFormMatcher();
+        return texts.stream()
+                .map(matcher::findLongestMatches)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Annotates the sentences in parallel, reading them as they are consumed. Annotations are passed to the consumer
+     * in the same order of the sentences, and at most a few batches of sentences are kept in memory at any time.
+     */
+    public void annotate(Iterator<Sentence> sentences, Consumer<SentenceAnnotations> consumer) {
+        // the same matcher for all the sentences, even if the ontology changes meanwhile
+        SurfaceFormMatcher matcher = getSurfaceFormMatcher();
+        annotateInParallel(sentences, sentence -> {
+            if (sentence == null || sentence.getText() == null)
+                throw new IllegalArgumentException(String.format("Sentence without text: %s", sentence == null ? null : sentence.getId()));
+            return new SentenceAnnotations(sentence.getId(), matcher.findLongestMatches(sentence.getText()));
+        }, consumer);
+    }
+
+    /**
+     * Splits the document in sentences, identified by their position starting from 0, and annotates them as
+     * {@link #annotate(Iterator, Consumer)}. Offsets of the annotations are relative to the document.
+     */
+    public void annotateDocument(String document, Consumer<SentenceAnnotations> consumer) {
+        SurfaceFormMatcher matcher = getSurfaceFormMatcher();
+        annotateInParallel(new SentenceBoundaries(document), boundaries -> new SentenceAnnotations(
+                String.valueOf(boundaries[0]),
+                matcher.findLongestMatches(document, boundaries[1], boundaries[2])), consumer);
+    }
+
+    private <T> void annotateInParallel(Iterator<T> sentences, Function<T, SentenceAnnotations> annotator, Consumer<SentenceAnnotations> consumer) {
+        try (OrderedBatchExecutor.Batches<SentenceAnnotations> batches = executor.newBatches(executor.getParallelism(), "annotating sentences", consumer)) {
+            while (sentences.hasNext()) {
+                List<T> batch = new ArrayList<>(SENTENCES_PER_TASK);
+                while (sentences.hasNext() && batch.size() < SENTENCES_PER_TASK) batch.add(sentences.next());
+                batches.submit(() -> batch.stream().map(annotator).collect(Collectors.toList()));
+            }
+            batches.finish();
+        }
+    }
+
+    private SurfaceFormMatcher getSurfaceFormMatcher() {
+        return surfaceFormMatcher.get(domainOntology.getOntModel());
+    }
+
+    private SurfaceFormMatcher compileSurfaceFormMatcher(OntModel model) {
+        Map<String, Set<String>> surfaceFormsByUri = domainOntology.getSurfaceFormsByUri(model);
+        SurfaceFormMatcher matcher = SurfaceFormMatcher.compile(surfaceFormsByUri);
+        logger.info("Compiled {} surface forms of {} resources", matcher.getNumberOfSurfaceForms(), surfaceFormsByUri.size());
+        return matcher;
+    }
+
+    /**
+     * The sentences of a text, as their number, begin and end offsets
+     */
+    private static class SentenceBoundaries implements Iterator<int[]> {
+
+        private final BreakIterator breakIterator = BreakIterator.getSentenceInstance(Locale.ENGLISH);
+        private int sentenceNumber = 0;
+        private int begin;
+        private int end;
+
+        SentenceBoundaries(String text) {
+            breakIterator.setText(text);
+            this.begin = breakIterator.first();
+            this.end = breakIterator.next();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return end != BreakIterator.DONE;
+        }
+
+        @Override
+        public int[] next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int[] boundaries = {sentenceNumber++, begin, end};
+            begin = end;
+            end = breakIterator.next();
+            return boundaries;
+        }
+
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.close();
+        surfaceFormMatcher.close();
+    }
+
+}
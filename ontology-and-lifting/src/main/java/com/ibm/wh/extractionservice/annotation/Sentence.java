@@ -0,0 +1,29 @@
+package com.ibm.wh.extractionservice.annotation;
+
+/**
+ * A text to annotate, identified by the caller so that its annotations can be matched back to it
+ */
+public class Sentence {
+
+    private String id;
+    private String text;
+
+    @SuppressWarnings("unused")
+    protected Sentence() {
+        // required by Jackson!
+    }
+
+    public Sentence(String id, String text) {
+        this.id = id;
+        this.text = text;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.ibm.wh.extractionservice.annotation;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The surface forms found in a sentence, with offsets relative to the text the sentence is part of
+ */
+public class SentenceAnnotations {
+
+    private String id;
+    private List<SurfaceFormMatch> annotations;
+
+    @SuppressWarnings("unused")
+    protected SentenceAnnotations() {
+        // required by Jackson!
+    }
+
+    public SentenceAnnotations(String id, List<SurfaceFormMatch> annotations) {
+        this.id = id;
+        this.annotations = annotations;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<SurfaceFormMatch> getAnnotations() {
+        return annotations;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SentenceAnnotations that = (SentenceAnnotations) o;
+        return Objects.equals(id, that.id) && Objects.equals(annotations, that.annotations);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, annotations);
+    }
+
+    @Override
+    public String toString() {
+        return "SentenceAnnotations{" +
+                "id='" + id + '\'' +
+                ", annotations=" + annotations +
+                '}';
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.ibm.wh.extractionservice.annotation;
+
+import java.util.List;
+import java.util.Objects;
+
+public class SurfaceFormMatch {
+
+    private final int begin;
+    private final int end;
+    private final String coveredText;
+    private final List<String> resourceIds;
+
+    public SurfaceFormMatch(int begin, int end, String coveredText, List<String> resourceIds) {
+        this.begin = begin;
+        this.end = end;
+        this.coveredText = coveredText;
+        this.resourceIds = resourceIds;
+    }
+
+    /**
+     * @return the offset of the first character of the match in the text
+     */
+    public int getBegin() {
+        return begin;
+    }
+
+    /**
+     * @return the offset after the last character of the match in the text
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    public String getCoveredText() {
+        return coveredText;
+    }
+
+    /**
+     * @return the resources having the matched surface form
+     */
+    public List<String> getResourceIds() {
+        return resourceIds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SurfaceFormMatch that = (SurfaceFormMatch) o;
+        return begin == that.begin &&
+                end == that.end &&
+                Objects.equals(coveredText, that.coveredText) &&
+                Objects.equals(resourceIds, that.resourceIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(begin, end, coveredText, resourceIds);
+    }
+
+    @Override
+    public String toString() {
+        return "SurfaceFormMatch{" +
+                "begin=" + begin +
+                ", end=" + end +
+                ", coveredText='" + coveredText + '\'' +
+                ", resourceIds=" + resourceIds +
+                '}';
+    }
+
+}
@@ -0,0 +1,246 @@
+package com.ibm.wh.extractionservice.annotation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.analysis.en.EnglishMinimalStemmer;
+
+/**
+ * Finds the surface forms of a dictionary in a text. Surface forms and texts are split in tokens, made of letters and
+ * digits, that are lowercased and reduced to their singular form, so that e.g. "Root-canal therapies" matches the
+ * surface form "root canal therapy".
+ * <p>
+ * The surface forms are compiled in an Aho-Corasick automaton over the tokens, which finds all the surface forms
+ * occurring in a text in a single pass. Instances are immutable and can be shared among threads.
+ */
+public class SurfaceFormMatcher {
+
+    private static final EnglishMinimalStemmer STEMMER = new EnglishMinimalStemmer();
+
+    private final Map<String, Integer> tokenIds;
+    private final State root;
+    private final int numberOfSurfaceForms;
+
+    private SurfaceFormMatcher(Map<String, Integer> tokenIds, State root, int numberOfSurfaceForms) {
+        this.tokenIds = tokenIds;
+        this.root = root;
+        this.numberOfSurfaceForms = numberOfSurfaceForms;
+    }
+
+    /**
+     * @param surfaceFormsById the surface forms of each resource, by resource id
+     */
+    public static SurfaceFormMatcher compile(Map<String, ? extends Collection<String>> surfaceFormsById) {
+        Map<String, Integer> tokenIds = new HashMap<>();
+        MutableState root = new MutableState(0);
+        int numberOfSurfaceForms = 0;
+        for (Map.Entry<String, ? extends Collection<String>> entry : surfaceFormsById.entrySet()) {
+            for (String surfaceForm : entry.getValue()) {
+                List<Token> tokens = tokenize(surfaceForm);
+                if (tokens.isEmpty()) continue;
+                MutableState state = root;
+                for (Token token : tokens) {
+                    int tokenId = tokenIds.computeIfAbsent(token.text, text -> tokenIds.size());
+                    MutableState current = state;
+                    state = state.next.computeIfAbsent(tokenId, id -> new MutableState(current.depth + 1));
+                }
+                state.ids.add(entry.getKey());
+                numberOfSurfaceForms++;
+            }
+        }
+        return new SurfaceFormMatcher(tokenIds, freeze(root), numberOfSurfaceForms);
+    }
+
+    /**
+     * Computes the failure links breadth first, so that the links of a state are computed after the ones of all the
+     * shorter states, then builds the compact immutable states.
+     */
+    private static State freeze(MutableState mutableRoot) {
+        Map<MutableState, State> states = new HashMap<>();
+        Deque<MutableState> open = new ArrayDeque<>();
+        List<MutableState> ordered = new ArrayList<>();
+        open.add(mutableRoot);
+        while (!open.isEmpty()) {
+            MutableState state = open.poll();
+            ordered.add(state);
+            for (Map.Entry<Integer, MutableState> transition : state.next.entrySet()) {
+                MutableState child = transition.getValue();
+                MutableState failure = state.failure;
+                while (failure != null && !failure.next.containsKey(transition.getKey())) failure = failure.failure;
+                child.failure = failure == null ? mutableRoot : failure.next.get(transition.getKey());
+                // the closest state, following the failure links, where a surface form ends
+                child.output = child.failure.ids.isEmpty() ? child.failure.output : child.failure;
+                open.add(child);
+            }
+        }
+
+        for (MutableState state : ordered) states.put(state, new State(state.depth, state.ids.isEmpty() ? null : state.ids.toArray(new String[0])));
+        for (MutableState state : ordered) {
+            State frozen = states.get(state);
+            int[] tokens = state.next.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            State[] next = Arrays.stream(tokens).mapToObj(token -> states.get(state.next.get(token))).toArray(State[]::new);
+            frozen.link(tokens, next, states.get(state.failure), states.get(state.output));
+        }
+        return states.get(mutableRoot);
+    }
+
+    public int getNumberOfSurfaceForms() {
+        return numberOfSurfaceForms;
+    }
+
+    /**
+     * Finds the surface forms occurring in the text and keeps the longest ones that do not overlap: when two matches
+     * overlap the one starting first wins, or the longest one if they start at the same token.
+     *
+     * @return the matches sorted by position
+     */
+    public List<SurfaceFormMatch> findLongestMatches(String text) {
+        return findLongestMatches(text, 0, text.length());
+    }
+
+    /**
+     * Same as {@link #findLongestMatches(String)} for the characters of the text between begin, inclusive, and end,
+     * exclusive, e.g. a sentence of a document. Offsets of the matches are relative to the whole text.
+     */
+    public List<SurfaceFormMatch> findLongestMatches(String text, int begin, int end) {
+        if (begin < 0 || end > text.length() || begin > end)
+            throw new IllegalArgumentException(String.format("Invalid range [%d, %d) of a text of length %d", begin, end, text.length()));
+        List<Token> tokens = tokenize(text, begin, end);
+        // the surface forms ending at each token are in the chain of output links of a state
+        State[] endingAt = new State[tokens.size()];
+        State state = root;
+        for (int i = 0; i < tokens.size(); i++) {
+            Integer tokenId = tokenIds.get(tokens.get(i).text);
+            state = tokenId == null ? root : state.next(tokenId);
+            endingAt[i] = state.ids != null ? state : state.output;
+        }
+
+        // the longest surface form starting at each token, as the index of the token where it ends
+        int[] longestEndingAt = new int[tokens.size()];
+        Arrays.fill(longestEndingAt, -1);
+        State[] longest = new State[tokens.size()];
+        for (int i = 0; i < tokens.size(); i++) {
+            for (State ending = endingAt[i]; ending != null; ending = ending.output) {
+                int start = i - ending.depth + 1;
+                // tokens are scanned left to right, so the last match found for a start is the longest
+                longestEndingAt[start] = i;
+                longest[start] = ending;
+            }
+        }
+
+        List<SurfaceFormMatch> matches = new ArrayList<>();
+        for (int start = 0; start < tokens.size(); start++) {
+            if (longest[start] == null) continue;
+            int last = longestEndingAt[start];
+            int matchBegin = tokens.get(start).begin;
+            int matchEnd = tokens.get(last).end;
+            matches.add(new SurfaceFormMatch(matchBegin, matchEnd, text.substring(matchBegin, matchEnd), Collections.unmodifiableList(Arrays.asList(longest[start].ids))));
+            // overlapping matches are skipped
+            start = last;
+        }
+        return matches;
+    }
+
+    private static List<Token> tokenize(String text) {
+        return tokenize(text, 0, text.length());
+    }
+
+    private static List<Token> tokenize(String text, int from, int to) {
+        List<Token> tokens = new ArrayList<>();
+        int i = from;
+        while (i < to) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int begin = i;
+            while (i < to && Character.isLetterOrDigit(text.charAt(i))) i++;
+            tokens.add(new Token(normalise(text.substring(begin, i)), begin, i));
+        }
+        return tokens;
+    }
+
+    private static String normalise(String token) {
+        char[] chars = token.toLowerCase(Locale.ROOT).toCharArray();
+        return new String(chars, 0, STEMMER.stem(chars, chars.length));
+    }
+
+    private static class Token {
+
+        private final String text;
+        private final int begin;
+        private final int end;
+
+        Token(String text, int begin, int end) {
+            this.text = text;
+            this.begin = begin;
+            this.end = end;
+        }
+
+    }
+
+    private static class MutableState {
+
+        private final int depth;
+        private final Map<Integer, MutableState> next = new HashMap<>();
+        private final Set<String> ids = new LinkedHashSet<>();
+        private MutableState failure;
+        private MutableState output;
+
+        MutableState(int depth) {
+            this.depth = depth;
+        }
+
+    }
+
+    private static class State {
+
+        private static final int[] NO_TOKENS = new int[0];
+        private static final State[] NO_STATES = new State[0];
+
+        private final int depth;
+        // the ids of the resources of the surface form ending here, null if none
+        private final String[] ids;
+        private int[] tokens = NO_TOKENS;
+        private State[] next = NO_STATES;
+        private State failure;
+        private State output;
+
+        State(int depth, String[] ids) {
+            this.depth = depth;
+            this.ids = ids;
+        }
+
+        void link(int[] tokens, State[] next, State failure, State output) {
+            this.tokens = tokens;
+            this.next = next;
+            this.failure = failure;
+            this.output = output;
+        }
+
+        /**
+         * The state reached reading the token, following the failure links until a transition is found
+         */
+        State next(int token) {
+            State state = this;
+            while (true) {
+                int index = Arrays.binarySearch(state.tokens, token);
+                if (index >= 0) return state.next[index];
+                if (state.failure == null) return state;
+                state = state.failure;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.ibm.wh.extractionservice.benefitrule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.function.BiConsumer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads a JSON array of benefit rules, e.g. an export of the rules store, one rule at a time, so that arrays of any
+ * size are read in bounded memory.
+ */
+final class BenefitRuleArrayReader {
+
+    private BenefitRuleArrayReader() {
+    }
+
+    /**
+     * Passes the tree of each rule to the consumer, with the position of the rule in the array starting from 1. The
+     * trees are not bound to {@link com.ibm.wh.extractionservice.commons.benefitrule.BenefitRule}, so that a rule that
+     * cannot be bound does not stop the reading of the following ones.
+     */
+    static void forEachRule(ObjectMapper objectMapper, InputStream benefitRulesAsJsonArray, BiConsumer<Long, JsonNode> consumer) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(benefitRulesAsJsonArray)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY)
+                throw new IllegalArgumentException("Expected a JSON array of benefit rules");
+            long position = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                consumer.accept(++position, objectMapper.readTree(parser));
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(String.format("Invalid JSON array of benefit rules: %s", e.getOriginalMessage()), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.ibm.wh.extractionservice.benefitrule;
+
+import java.io.InputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ibm.wh.extractionservice.support.NdjsonWriter;
+
+import io.swagger.annotations.ApiOperation;
+
+@RestController
+public class BenefitRuleController {
+
+    public static final String ENDPOINT__VALIDATE_BENEFIT_RULES = "/benefit-rules/validate";
+    public static final String ENDPOINT__LIFT_BENEFIT_RULES = "/benefit-rules/lift";
+
+    private final BenefitRuleValidationService benefitRuleValidationService;
+    private final BenefitRuleLiftingService benefitRuleLiftingService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public BenefitRuleController(BenefitRuleValidationService benefitRuleValidationService,
+                                 BenefitRuleLiftingService benefitRuleLiftingService,
+                                 ObjectMapper objectMapper) {
+        this.benefitRuleValidationService = benefitRuleValidationService;
+        this.benefitRuleLiftingService = benefitRuleLiftingService;
+        this.objectMapper = objectMapper;
+    }
+
+    @ApiOperation(value = "validateBenefitRules - Validate a JSON array of benefit rules against the condition templates of the ontology.",
+            notes = "The rules, e.g. an export of the rules store, are read one at a time and validated in parallel. A report is streamed " +
+                    "back for each rule as newline-delimited JSON, in the same order of the rules, with the errors of its conditions: " +
+                    "unknown condition templates, wrong template types, values that are not candidate values of their template and " +
+                    "free text values that are not compatible with the datatype of their template.")
+    @PostMapping(path = ENDPOINT__VALIDATE_BENEFIT_RULES, consumes = MediaType.APPLICATION_JSON_VALUE, produces = NdjsonWriter.MEDIA_TYPE_VALUE)
+    public StreamingResponseBody validateBenefitRules(InputStream benefitRulesAsJsonArray) {
+        return outputStream -> {
+            try (NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream)) {
+                benefitRuleValidationService.validate(benefitRulesAsJsonArray, writer::write);
+            }
+        };
+    }
+
+    @ApiOperation(value = "liftBenefitRules - Lift a JSON array of benefit rules to RDF individuals of the ontology.",
+            notes = "Each rule becomes an individual of the benefit rule class of its subtype, linked to its policy, and each condition " +
+                    "the value of the property of its condition template, on anonymous individuals of the intermediate classes when the " +
+                    "property does not belong to the rule class. The rules are read one at a time and their triples streamed back " +
+                    "in the requested format, so that exports of any size can be lifted.")
+    @PostMapping(path = ENDPOINT__LIFT_BENEFIT_RULES, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> liftBenefitRules(
+            InputStream benefitRulesAsJsonArray,
+            @RequestParam(value = "format", defaultValue = "NTRIPLES") RdfStreamFormat format
+    ) {
+        StreamingResponseBody body = outputStream -> benefitRuleLiftingService.lift(benefitRulesAsJsonArray, format.newWriter(outputStream));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .body(body);
+    }
+
+}
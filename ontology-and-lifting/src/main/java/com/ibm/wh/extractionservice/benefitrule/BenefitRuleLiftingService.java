@@ -0,0 +1,79 @@
+package com.ibm.wh.extractionservice.benefitrule;
+
+import java.io.InputStream;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.jena.riot.system.StreamRDF;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ibm.wh.extractionservice.commons.benefitrule.BenefitRule;
+import com.ibm.wh.extractionservice.ontology.DomainOntology;
+import com.ibm.wh.extractionservice.support.jena.ModelCache;
+import com.ibm.wh.extractionservice.support.jena.SchemaIndex;
+
+/**
+ * Lifts benefit rules to RDF individuals of the benefit rule classes of the domain ontology, see
+ * {@link BenefitRuleRdfMapping}. The triples are sent to a {@link StreamRDF} as soon as each rule is read, so that any
+ * number of rules can be lifted in bounded memory and without building a model.
+ */
+@Service
+public class BenefitRuleLiftingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BenefitRuleLiftingService.class);
+
+    private final DomainOntology domainOntology;
+    private final ObjectMapper objectMapper;
+    // the schema, the display names of the rule classes and the annotated-as datatypes
+    private final ModelCache<BenefitRuleRdfMapping> mapping;
+
+    @Autowired
+    public BenefitRuleLiftingService(DomainOntology domainOntology, ObjectMapper objectMapper) {
+        this.domainOntology = domainOntology;
+        this.objectMapper = objectMapper;
+        this.mapping = new ModelCache<>(
+                statement -> SchemaIndex.isSchemaStatement(statement) || domainOntology.isAnnotationStatement(statement),
+                model -> BenefitRuleRdfMapping.build(domainOntology));
+    }
+
+    @PreDestroy
+    public void close() {
+        mapping.close();
+    }
+
+    /**
+     * Reads a JSON array of benefit rules one rule at a time and sends the triples of each rule to the sink, between
+     * {@link StreamRDF#start()} and {@link StreamRDF#finish()}. Rules that cannot be read as benefit rules, and
+     * conditions whose template is not reachable from the class of their rule, are skipped.
+     *
+     * @return the number of rules lifted
+     */
+    public long lift(InputStream benefitRulesAsJsonArray, StreamRDF sink) {
+        // the same mapping for all the rules, even if the ontology changes meanwhile
+        BenefitRuleRdfMapping currentMapping = mapping.get(domainOntology.getOntModel());
+        long[] counts = new long[3];
+        sink.start();
+        sink.prefix("", domainOntology.getNamespace());
+        BenefitRuleArrayReader.forEachRule(objectMapper, benefitRulesAsJsonArray, (position, tree) -> {
+            BenefitRule benefitRule;
+            try {
+                benefitRule = objectMapper.treeToValue(tree, BenefitRule.class);
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                logger.debug("Skipping benefit rule at position {}: {}", position, e.getMessage());
+                counts[1]++;
+                return;
+            }
+            counts[2] += currentMapping.write(benefitRule, position, sink);
+            counts[0]++;
+        });
+        sink.finish();
+        logger.info("Lifted {} benefit rules, skipped {} rules that are not valid and {} conditions with no matching property", counts[0], counts[1], counts[2]);
+        return counts[0];
+    }
+
+}
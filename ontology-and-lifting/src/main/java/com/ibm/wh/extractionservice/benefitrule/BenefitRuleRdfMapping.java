@@ -0,0 +1,321 @@
+package com.ibm.wh.extractionservice.benefitrule;
+
+import static com.ibm.wh.extractionservice.support.NlpUtils.integerValueOf;
+import static com.ibm.wh.extractionservice.support.NlpUtils.isInteger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.ontology.OntClass;
+import org.apache.jena.ontology.OntProperty;
+import org.apache.jena.ontology.OntResource;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.vocabulary.RDF;
+
+import com.ibm.wh.extractionservice.commons.benefitrule.BenefitRule;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.AbstractConditionTemplateValue;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.FreeTextConditionTemplateValue;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.MultipleSelectionConditionTemplateValue;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.SingleSelectionConditionTemplateValue;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.value.CandidateValue;
+import com.ibm.wh.extractionservice.ontology.DomainOntology;
+import com.ibm.wh.extractionservice.support.jena.Models;
+import com.ibm.wh.extractionservice.support.jena.SchemaIndex;
+
+/**
+ * How benefit rules are written as RDF individuals, read once from the schema of the domain ontology so that rules can
+ * be written without accessing the ontology model. Instances are immutable and can be shared among threads.
+ * <p>
+ * A rule is an individual of the benefit rule class with the display name of its subtype. Each condition is the value
+ * of the property of its condition template: when the domain of the property is not the rule class but a class
+ * reachable from it, e.g. the applicable time period of a service limitation, the value is added to an anonymous
+ * individual of that class, linked to the rule through the same properties that connect the classes in the schema.
+ * The anonymous individuals are shared by all the conditions of the same rule.
+ */
+final class BenefitRuleRdfMapping {
+
+    private static final Node TYPE = RDF.type.asNode();
+
+    private final String ruleUriPrefix;
+    private final Node displayNameProperty;
+    private final Map<String, RuleClassMapping> ruleClassesBySubtype;
+    // tried in order when the subtype of a rule is unknown
+    private final List<RuleClassMapping> ruleClasses;
+    private final RuleClassMapping parentRuleClass;
+    private final Optional<PolicyMapping> policy;
+
+    private BenefitRuleRdfMapping(String ruleUriPrefix,
+                                  Node displayNameProperty,
+                                  Map<String, RuleClassMapping> ruleClassesBySubtype,
+                                  List<RuleClassMapping> ruleClasses,
+                                  RuleClassMapping parentRuleClass,
+                                  Optional<PolicyMapping> policy) {
+        this.ruleUriPrefix = ruleUriPrefix;
+        this.displayNameProperty = displayNameProperty;
+        this.ruleClassesBySubtype = ruleClassesBySubtype;
+        this.ruleClasses = ruleClasses;
+        this.parentRuleClass = parentRuleClass;
+        this.policy = policy;
+    }
+
+    static BenefitRuleRdfMapping build(DomainOntology domainOntology) {
+        SchemaIndex schemaIndex = domainOntology.getSchemaIndex();
+        String namespace = domainOntology.getNamespace();
+        OntClass parentBenefitRuleClass = domainOntology.getParentBenefitRuleClass();
+
+        Map<String, RuleClassMapping> ruleClassesBySubtype = new HashMap<>();
+        List<RuleClassMapping> ruleClasses = new ArrayList<>();
+        domainOntology.getBenefitRuleClasses().stream()
+                .sorted(Comparator.comparing(Resource::getURI))
+                .forEach(ruleClass -> {
+                    RuleClassMapping ruleClassMapping = mapRuleClass(ruleClass, schemaIndex, namespace, domainOntology);
+                    ruleClasses.add(ruleClassMapping);
+                    domainOntology.getDisplayName(ruleClass).ifPresent(subtype -> ruleClassesBySubtype.putIfAbsent(subtype, ruleClassMapping));
+                });
+
+        // the property linking policies to their rules, e.g. hasBenefitRule
+        OntClass policyClass = domainOntology.getPolicyClass();
+        Optional<PolicyMapping> policy = schemaIndex.getPropertiesWithDomain(policyClass).stream()
+                .filter(property -> schemaIndex.getRangeClasses(property).orElse(Collections.emptySet()).contains(parentBenefitRuleClass))
+                .min(Comparator.comparing(Resource::getURI))
+                .map(property -> new PolicyMapping(
+                        Models.getIndividualUriPrefix(namespace, policyClass.getURI()),
+                        policyClass.asNode(),
+                        property.asNode()));
+
+        return new BenefitRuleRdfMapping(
+                Models.getIndividualUriPrefix(namespace, parentBenefitRuleClass.getURI()),
+                domainOntology.getDisplayNameProperty().asNode(),
+                ruleClassesBySubtype,
+                ruleClasses,
+                mapRuleClass(parentBenefitRuleClass, schemaIndex, namespace, domainOntology),
+                policy);
+    }
+
+    // the shortest path from the rule class to the domain of each property, following the single range class in the
+    // namespace of the properties as SchemaIndex#getClassesConnectedWithClass does
+    private static RuleClassMapping mapRuleClass(OntClass ruleClass, SchemaIndex schemaIndex, String namespace, DomainOntology domainOntology) {
+        Map<String, TemplateMapping> templatesById = new HashMap<>();
+        Map<OntClass, List<Hop>> pathsByClass = new HashMap<>();
+        pathsByClass.put(ruleClass, Collections.emptyList());
+        Queue<OntClass> open = new LinkedList<>();
+        open.add(ruleClass);
+        while (!open.isEmpty()) {
+            OntClass currentDomain = open.poll();
+            List<Hop> path = pathsByClass.get(currentDomain);
+            schemaIndex.getPropertiesWithDomain(currentDomain).stream()
+                    .filter(property -> property.isDatatypeProperty() || property.isObjectProperty())
+                    .sorted(Comparator.comparing(Resource::getURI))
+                    .forEach(property -> {
+                        templatesById.putIfAbsent(property.getURI(), new TemplateMapping(path, property.asNode(), literalMapping(property, domainOntology)));
+                        schemaIndex.getRangeClasses(property).orElse(Collections.emptySet()).stream()
+                                .filter(rangeClass -> namespace.equalsIgnoreCase(rangeClass.getNameSpace()))
+                                .findFirst()
+                                .filter(rangeClass -> !pathsByClass.containsKey(rangeClass))
+                                .ifPresent(rangeClass -> {
+                                    List<Hop> rangePath = new ArrayList<>(path);
+                                    String key = path.isEmpty() ? property.getLocalName() : path.get(path.size() - 1).key + "/" + property.getLocalName();
+                                    rangePath.add(new Hop(key, property.asNode(), rangeClass.asNode()));
+                                    pathsByClass.put(rangeClass, Collections.unmodifiableList(rangePath));
+                                    open.add(rangeClass);
+                                });
+                    });
+        }
+        return new RuleClassMapping(ruleClass.asNode(), templatesById);
+    }
+
+    // free text values are typed after the range of their property, as DomainOntology#rangeNodeOf does, and are kept
+    // as strings when not compatible with it
+    private static Function<String, Node> literalMapping(OntProperty property, DomainOntology domainOntology) {
+        OntResource range = property.isDatatypeProperty() ? property.getRange() : null;
+        if (range == null || range.isAnon()) return BenefitRuleRdfMapping::stringLiteral;
+        if (!domainOntology.getAnnotatedAsValues(range).isEmpty()) {
+            String datatypeUri = range.getURI();
+            return text -> NodeFactory.createLiteral(text, TypeMapper.getInstance().getSafeTypeByName(datatypeUri));
+        }
+        if (Models.isIntegerDatatype(range)) {
+            return text -> {
+                try {
+                    if (isInteger(text.trim())) return ResourceFactory.createTypedLiteral(integerValueOf(text.trim())).asNode();
+                } catch (NumberFormatException e) {
+                    // too large for the datatype, kept as it is
+                }
+                return stringLiteral(text);
+            };
+        }
+        return BenefitRuleRdfMapping::stringLiteral;
+    }
+
+    private static Node stringLiteral(String text) {
+        return ResourceFactory.createTypedLiteral(text).asNode();
+    }
+
+    /**
+     * Sends the triples of the rule to the sink
+     *
+     * @param position the position of the rule in its input, to identify rules without id
+     * @return the number of conditions that could not be written, since their condition template is not a property
+     * reachable from the class of the rule
+     */
+    int write(BenefitRule benefitRule, long position, StreamRDF sink) {
+        String ruleLabel = benefitRule.getId() == null
+                ? "benefit_rule_" + position
+                : Models.generateUriForIndividualWithPrefix(ruleUriPrefix, benefitRule.getId());
+        Node rule = benefitRule.getId() == null ? NodeFactory.createBlankNode(ruleLabel) : NodeFactory.createURI(ruleLabel);
+        RuleClassMapping ruleClass = getRuleClass(benefitRule);
+
+        sink.triple(Triple.create(rule, TYPE, ruleClass.classNode));
+        if (benefitRule.getDisplayName() != null)
+            sink.triple(Triple.create(rule, displayNameProperty, stringLiteral(benefitRule.getDisplayName())));
+        if (benefitRule.getPolicyId() != null)
+            policy.ifPresent(policyMapping -> {
+                Node policyNode = NodeFactory.createURI(Models.generateUriForIndividualWithPrefix(policyMapping.uriPrefix, benefitRule.getPolicyId()));
+                sink.triple(Triple.create(policyNode, TYPE, policyMapping.classNode));
+                sink.triple(Triple.create(policyNode, policyMapping.ruleProperty, rule));
+            });
+
+        // the anonymous individuals of the rule, by the key of the path leading to them
+        Map<String, Node> individualsByPath = new HashMap<>();
+        int unmapped = 0;
+        for (AbstractConditionTemplateValue condition : benefitRule.getConditions()) {
+            TemplateMapping template = condition == null || condition.getConditionTemplateId() == null ? null
+                    : ruleClass.templatesById.get(condition.getConditionTemplateId());
+            if (template == null) {
+                unmapped++;
+                continue;
+            }
+            Node subject = getOrWritePath(rule, ruleLabel, template.path, individualsByPath, sink);
+            for (Node value : values(condition, template)) sink.triple(Triple.create(subject, template.property, value));
+        }
+        return unmapped;
+    }
+
+    private RuleClassMapping getRuleClass(BenefitRule benefitRule) {
+        RuleClassMapping ruleClass = benefitRule.getSubtype() == null ? null : ruleClassesBySubtype.get(benefitRule.getSubtype());
+        if (ruleClass != null) return ruleClass;
+        // the rule class with most of the condition templates of the rule
+        Set<String> templateIds = benefitRule.getConditions().stream()
+                .filter(condition -> condition != null && condition.getConditionTemplateId() != null)
+                .map(AbstractConditionTemplateValue::getConditionTemplateId)
+                .collect(Collectors.toSet());
+        RuleClassMapping best = parentRuleClass;
+        long bestCount = templateIds.stream().filter(parentRuleClass.templatesById::containsKey).count();
+        for (RuleClassMapping candidate : ruleClasses) {
+            long count = templateIds.stream().filter(candidate.templatesById::containsKey).count();
+            if (count > bestCount) {
+                best = candidate;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    private static Node getOrWritePath(Node rule, String ruleLabel, List<Hop> path, Map<String, Node> individualsByPath, StreamRDF sink) {
+        Node subject = rule;
+        for (Hop hop : path) {
+            Node individual = individualsByPath.get(hop.key);
+            if (individual == null) {
+                individual = NodeFactory.createBlankNode(ruleLabel + "/" + hop.key);
+                individualsByPath.put(hop.key, individual);
+                sink.triple(Triple.create(subject, hop.property, individual));
+                sink.triple(Triple.create(individual, TYPE, hop.rangeClass));
+            }
+            subject = individual;
+        }
+        return subject;
+    }
+
+    private static Collection<Node> values(AbstractConditionTemplateValue condition, TemplateMapping template) {
+        if (condition instanceof FreeTextConditionTemplateValue) {
+            String value = ((FreeTextConditionTemplateValue) condition).getValue();
+            return value == null ? Collections.emptyList() : Collections.singletonList(template.literalOf.apply(value));
+        }
+        if (condition instanceof SingleSelectionConditionTemplateValue) {
+            CandidateValue value = ((SingleSelectionConditionTemplateValue) condition).getValue();
+            return value == null || value.getId() == null ? Collections.emptyList() : Collections.singletonList(NodeFactory.createURI(value.getId()));
+        }
+        if (condition instanceof MultipleSelectionConditionTemplateValue) {
+            Set<CandidateValue> values = ((MultipleSelectionConditionTemplateValue) condition).getValues();
+            if (values == null) return Collections.emptyList();
+            return values.stream()
+                    .filter(value -> value != null && value.getId() != null)
+                    .map(value -> NodeFactory.createURI(value.getId()))
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+        return Collections.emptyList();
+    }
+
+    private static class RuleClassMapping {
+
+        private final Node classNode;
+        private final Map<String, TemplateMapping> templatesById;
+
+        RuleClassMapping(Node classNode, Map<String, TemplateMapping> templatesById) {
+            this.classNode = classNode;
+            this.templatesById = templatesById;
+        }
+
+    }
+
+    private static class TemplateMapping {
+
+        // from the rule to the domain of the property, empty if the domain is the rule class
+        private final List<Hop> path;
+        private final Node property;
+        private final Function<String, Node> literalOf;
+
+        TemplateMapping(List<Hop> path, Node property, Function<String, Node> literalOf) {
+            this.path = path;
+            this.property = property;
+            this.literalOf = literalOf;
+        }
+
+    }
+
+    private static class Hop {
+
+        // identifies the anonymous individual reached with this hop among those of the same rule
+        private final String key;
+        private final Node property;
+        private final Node rangeClass;
+
+        Hop(String key, Node property, Node rangeClass) {
+            this.key = key;
+            this.property = property;
+            this.rangeClass = rangeClass;
+        }
+
+    }
+
+    private static class PolicyMapping {
+
+        private final String uriPrefix;
+        private final Node classNode;
+        private final Node ruleProperty;
+
+        PolicyMapping(String uriPrefix, Node classNode, Node ruleProperty) {
+            this.uriPrefix = uriPrefix;
+            this.classNode = classNode;
+            this.ruleProperty = ruleProperty;
+        }
+
+    }
+
+}
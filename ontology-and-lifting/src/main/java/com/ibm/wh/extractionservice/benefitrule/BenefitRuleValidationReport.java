@@ -0,0 +1,67 @@
+package com.ibm.wh.extractionservice.benefitrule;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The outcome of the validation of a benefit rule of a batch: the rule is valid when there are no errors.
+ * Rules are numbered from 1 in the order of the batch, so that rules without id can be told apart.
+ */
+public class BenefitRuleValidationReport {
+
+    private long position;
+    private String ruleId;
+    private List<String> errors;
+
+    @SuppressWarnings("unused")
+    protected BenefitRuleValidationReport() {
+        // required by Jackson!
+    }
+
+    public BenefitRuleValidationReport(long position, String ruleId, List<String> errors) {
+        this.position = position;
+        this.ruleId = ruleId;
+        this.errors = errors;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public String getRuleId() {
+        return ruleId;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BenefitRuleValidationReport that = (BenefitRuleValidationReport) o;
+        return position == that.position &&
+                Objects.equals(ruleId, that.ruleId) &&
+                Objects.equals(errors, that.errors);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(position, ruleId, errors);
+    }
+
+    @Override
+    public String toString() {
+        return "BenefitRuleValidationReport{" +
+                "position=" + position +
+                ", ruleId='" + ruleId + '\'' +
+                ", errors=" + errors +
+                '}';
+    }
+
+}
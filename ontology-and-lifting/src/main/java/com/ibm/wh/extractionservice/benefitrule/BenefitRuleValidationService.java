@@ -0,0 +1,129 @@
+package com.ibm.wh.extractionservice.benefitrule;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ibm.wh.extractionservice.commons.benefitrule.BenefitRule;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.AbstractConditionTemplateValue;
+import com.ibm.wh.extractionservice.conditiontemplate.ConditionTemplateCatalogue;
+import com.ibm.wh.extractionservice.conditiontemplate.ConditionTemplateRepository;
+import com.ibm.wh.extractionservice.ontology.DomainOntology;
+import com.ibm.wh.extractionservice.support.OrderedBatchExecutor;
+
+/**
+ * Validates benefit rules against the condition templates of the domain ontology: each condition must refer to an
+ * existing template, of the same type, with candidate values of the template or, for free text templates, a value
+ * compatible with the datatype of the template.
+ */
+@Service
+public class BenefitRuleValidationService {
+
+    // rules validated by the same task, so that scheduling costs little compared to validation
+    private static final int RULES_PER_TASK = 64;
+
+    private final ConditionTemplateRepository conditionTemplateRepository;
+    private final DomainOntology domainOntology;
+    private final ObjectMapper objectMapper;
+    private final OrderedBatchExecutor executor;
+    private volatile ConditionTemplateConstraints constraints;
+
+    @Autowired
+    public BenefitRuleValidationService(
+            ConditionTemplateRepository conditionTemplateRepository,
+            DomainOntology domainOntology,
+            ObjectMapper objectMapper,
+            @Value("${benefit-rule.validation.parallelism:0}") int parallelism
+    ) {
+        this.conditionTemplateRepository = conditionTemplateRepository;
+        this.domainOntology = domainOntology;
+        this.objectMapper = objectMapper;
+        this.executor = new OrderedBatchExecutor(parallelism);
+    }
+
+    /**
+     * Reads a JSON array of benefit rules one rule at a time and validates the rules in parallel. A report for each
+     * rule is passed to the consumer, in the same order of the rules, and at most a few batches of rules are kept in
+     * memory at any time. Rules that cannot be read as benefit rules are reported as not valid.
+     */
+    public void validate(InputStream benefitRulesAsJsonArray, Consumer<BenefitRuleValidationReport> consumer) {
+        // the same constraints for all the rules, even if the ontology changes meanwhile
+        ConditionTemplateConstraints currentConstraints = getConstraints();
+        try (OrderedBatchExecutor.Batches<BenefitRuleValidationReport> batches = executor.newBatches(executor.getParallelism(), "validating benefit rules", consumer)) {
+            List<RuleTree> batch = new ArrayList<>(RULES_PER_TASK);
+            // only reading the tree of each rule is sequential, binding and validating it is not
+            BenefitRuleArrayReader.forEachRule(objectMapper, benefitRulesAsJsonArray, (position, tree) -> {
+                batch.add(new RuleTree(position, tree));
+                if (batch.size() < RULES_PER_TASK) return;
+                submit(new ArrayList<>(batch), currentConstraints, batches);
+                batch.clear();
+            });
+            if (!batch.isEmpty()) submit(batch, currentConstraints, batches);
+            batches.finish();
+        }
+    }
+
+    private void submit(List<RuleTree> batch, ConditionTemplateConstraints currentConstraints, OrderedBatchExecutor.Batches<BenefitRuleValidationReport> batches) {
+        batches.submit(() -> batch.stream()
+                .map(ruleTree -> validate(ruleTree, currentConstraints))
+                .collect(Collectors.toList()));
+    }
+
+    private BenefitRuleValidationReport validate(RuleTree ruleTree, ConditionTemplateConstraints currentConstraints) {
+        BenefitRule benefitRule;
+        try {
+            benefitRule = objectMapper.treeToValue(ruleTree.tree, BenefitRule.class);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            String message = e instanceof JsonProcessingException ? ((JsonProcessingException) e).getOriginalMessage() : e.getMessage();
+            List<String> errors = new ArrayList<>();
+            errors.add(String.format("Not a valid benefit rule: %s", message));
+            return new BenefitRuleValidationReport(ruleTree.position, null, errors);
+        }
+
+        List<String> errors = new ArrayList<>();
+        for (AbstractConditionTemplateValue condition : benefitRule.getConditions()) {
+            if (condition == null) errors.add("Null condition");
+            else errors.addAll(currentConstraints.validate(condition));
+        }
+        return new BenefitRuleValidationReport(ruleTree.position, benefitRule.getId(), errors);
+    }
+
+    private ConditionTemplateConstraints getConstraints() {
+        ConditionTemplateCatalogue catalogue = conditionTemplateRepository.getCatalogue();
+        ConditionTemplateConstraints current = constraints;
+        if (current != null && current.isBuiltFor(catalogue)) return current;
+        // concurrent requests may read the same catalogue twice, with the same result
+        current = ConditionTemplateConstraints.build(catalogue, domainOntology);
+        constraints = current;
+        return current;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.close();
+    }
+
+    private static class RuleTree {
+
+        private final long position;
+        private final JsonNode tree;
+
+        RuleTree(long position, JsonNode tree) {
+            this.position = position;
+            this.tree = tree;
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.ibm.wh.extractionservice.benefitrule;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.apache.jena.ontology.OntProperty;
+import org.apache.jena.ontology.OntResource;
+
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.AbstractConditionTemplate;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.AbstractConditionTemplateValue;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.AbstractSelectionConditionTemplate;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.FreeTextConditionTemplateValue;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.MultipleSelectionConditionTemplateValue;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.SingleSelectionConditionTemplateValue;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.value.CandidateValue;
+import com.ibm.wh.extractionservice.conditiontemplate.ConditionTemplateCatalogue;
+import com.ibm.wh.extractionservice.ontology.DomainOntology;
+import com.ibm.wh.extractionservice.support.jena.Models;
+
+/**
+ * What the values of each condition template of a catalogue must satisfy, read once from the catalogue and the
+ * ontology so that conditions can be checked without accessing the ontology model. Instances are immutable and can
+ * be shared among threads.
+ */
+final class ConditionTemplateConstraints {
+
+    private final ConditionTemplateCatalogue catalogue;
+    private final Map<String, Constraint> constraintsByTemplateId;
+
+    private ConditionTemplateConstraints(ConditionTemplateCatalogue catalogue, Map<String, Constraint> constraintsByTemplateId) {
+        this.catalogue = catalogue;
+        this.constraintsByTemplateId = constraintsByTemplateId;
+    }
+
+    static ConditionTemplateConstraints build(ConditionTemplateCatalogue catalogue, DomainOntology domainOntology) {
+        Map<String, Constraint> constraintsByTemplateId = new HashMap<>();
+        for (AbstractConditionTemplate template : catalogue.getConditionTemplates()) {
+            Set<String> candidateValueIds = template instanceof AbstractSelectionConditionTemplate
+                    ? candidateValueIds(((AbstractSelectionConditionTemplate) template).getCandidateValues())
+                    : Collections.emptySet();
+            constraintsByTemplateId.put(template.getId(), new Constraint(template.getType(), candidateValueIds, valueCompatibility(template, domainOntology)));
+        }
+        return new ConditionTemplateConstraints(catalogue, constraintsByTemplateId);
+    }
+
+    private static Set<String> candidateValueIds(Collection<CandidateValue> candidateValues) {
+        if (candidateValues == null) return Collections.emptySet();
+        return candidateValues.stream()
+                .map(CandidateValue::getId)
+                .collect(Collectors.toSet());
+    }
+
+    // the values of free text templates must be compatible with the datatype range of their property, if any
+    private static Predicate<String> valueCompatibility(AbstractConditionTemplate template, DomainOntology domainOntology) {
+        if (template.getType() != AbstractConditionTemplate.Type.FREE_TEXT) return value -> true;
+        OntProperty property = domainOntology.getOntModel().getOntProperty(template.getId());
+        OntResource range = property == null ? null : property.getRange();
+        if (range == null || range.isAnon() || !Models.isDatatype(range)) return value -> true;
+        return Models.valueCompatibilityWith(range);
+    }
+
+    /**
+     * @return whether the constraints have been read from the catalogue
+     */
+    boolean isBuiltFor(ConditionTemplateCatalogue catalogue) {
+        return this.catalogue == catalogue;
+    }
+
+    /**
+     * @return the reasons why the condition is not valid, empty if it is valid
+     */
+    List<String> validate(AbstractConditionTemplateValue condition) {
+        List<String> errors = new ArrayList<>();
+        String templateId = condition.getConditionTemplateId();
+        Constraint constraint = templateId == null ? null : constraintsByTemplateId.get(templateId);
+        if (constraint == null) {
+            errors.add(String.format("Condition template <%s> not found", templateId));
+            return errors;
+        }
+        if (condition.getConditionTemplateType() != constraint.type) {
+            errors.add(String.format("Condition template <%s> is %s, found %s", templateId, constraint.type, condition.getConditionTemplateType()));
+            return errors;
+        }
+
+        if (condition instanceof FreeTextConditionTemplateValue) {
+            String value = ((FreeTextConditionTemplateValue) condition).getValue();
+            if (value == null)
+                errors.add(String.format("Condition template <%s> has no value", templateId));
+            else if (!constraint.valueCompatibility.test(value))
+                errors.add(String.format("Value [%s] of condition template <%s> is not compatible with its datatype", value, templateId));
+        } else if (condition instanceof SingleSelectionConditionTemplateValue) {
+            CandidateValue value = ((SingleSelectionConditionTemplateValue) condition).getValue();
+            if (value == null) errors.add(String.format("Condition template <%s> has no value", templateId));
+            else validateCandidateValue(templateId, constraint, value, errors);
+        } else if (condition instanceof MultipleSelectionConditionTemplateValue) {
+            Set<CandidateValue> values = ((MultipleSelectionConditionTemplateValue) condition).getValues();
+            if (values == null || values.isEmpty()) errors.add(String.format("Condition template <%s> has no value", templateId));
+            else values.forEach(value -> validateCandidateValue(templateId, constraint, value, errors));
+        }
+        return errors;
+    }
+
+    private static void validateCandidateValue(String templateId, Constraint constraint, CandidateValue value, List<String> errors) {
+        if (!constraint.candidateValueIds.contains(value.getId()))
+            errors.add(String.format("<%s> is not a candidate value of condition template <%s>", value.getId(), templateId));
+    }
+
+    private static class Constraint {
+
+        private final AbstractConditionTemplate.Type type;
+        private final Set<String> candidateValueIds;
+        private final Predicate<String> valueCompatibility;
+
+        Constraint(AbstractConditionTemplate.Type type, Set<String> candidateValueIds, Predicate<String> valueCompatibility) {
+            this.type = type;
+            this.candidateValueIds = candidateValueIds;
+            this.valueCompatibility = valueCompatibility;
+        }
+
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.ibm.wh.extractionservice.benefitrule;
+
+import java.io.OutputStream;
+
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+
+/**
+ * The RDF formats that can be written one triple at a time, without holding the graph in memory.
+ * <p>
+ * Turtle is not one of them: the streaming Turtle writer of Jena maps every blank node of the document to its label
+ * until the end, and every rule without id, and every anonymous individual of a rule, is a new blank node.
+ */
+public enum RdfStreamFormat {
+
+    // blank node labels are written as they are, without keeping them
+    NTRIPLES(RDFFormat.NTRIPLES_UTF8, "application/n-triples"),
+    // binary, the fastest to read back with Jena, e.g. with riot or tdb2.tdbloader
+    THRIFT(RDFFormat.RDF_THRIFT, "application/rdf+thrift");
+
+    private final RDFFormat rdfFormat;
+    private final String mediaType;
+
+    RdfStreamFormat(RDFFormat rdfFormat, String mediaType) {
+        this.rdfFormat = rdfFormat;
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public StreamRDF newWriter(OutputStream outputStream) {
+        return StreamRDFWriter.getWriterStream(outputStream, rdfFormat);
+    }
+
+}
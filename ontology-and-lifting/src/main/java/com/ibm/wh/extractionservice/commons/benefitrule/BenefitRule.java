@@ -0,0 +1,71 @@
+package com.ibm.wh.extractionservice.commons.benefitrule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.AbstractConditionTemplateValue;
+
+/**
+ * A benefit rule as exported from the rules store: its conditions are the values of condition templates. Only the
+ * fields needed by the service are read.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BenefitRule {
+
+    private String id;
+    private String displayName;
+    private String subtype;
+    private String policyId;
+    private List<AbstractConditionTemplateValue> conditions = new ArrayList<>();
+
+    @SuppressWarnings("unused")
+    protected BenefitRule() {
+        // required by Jackson!
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * The id is exported either as a string or as an object id, e.g. {"$oid": "5c387dedcff47e0007dc8eea"}
+     */
+    @JsonSetter("_id")
+    void setId(JsonNode id) {
+        this.id = id.has("$oid") ? id.get("$oid").asText() : id.asText();
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * The display name of the benefit rule class of the rule, e.g. "Service Limitation"
+     */
+    public String getSubtype() {
+        return subtype;
+    }
+
+    public String getPolicyId() {
+        return policyId;
+    }
+
+    public List<AbstractConditionTemplateValue> getConditions() {
+        return conditions;
+    }
+
+    @Override
+    public String toString() {
+        return "BenefitRule{" +
+                "id='" + id + '\'' +
+                ", displayName='" + displayName + '\'' +
+                ", subtype='" + subtype + '\'' +
+                ", policyId='" + policyId + '\'' +
+                ", conditions=" + conditions +
+                '}';
+    }
+
+}
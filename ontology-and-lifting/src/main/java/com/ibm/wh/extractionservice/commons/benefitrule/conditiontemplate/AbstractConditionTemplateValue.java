@@ -23,6 +23,14 @@ public abstract class AbstractConditionTemplateValue {
         // required by Jackson!
     }
 
+    public String getConditionTemplateId() {
+        return conditionTemplateId;
+    }
+
+    public Type getConditionTemplateType() {
+        return conditionTemplateType;
+    }
+
     public String getDisplayName() {
         return displayName;
     }
@@ -18,6 +18,10 @@ public abstract class AbstractSelectionConditionTemplate extends AbstractConditi
         this.candidateValues = candidateValues;
     }
 
+    public Set<CandidateValue> getCandidateValues() {
+        return candidateValues;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(super.hashCode(), candidateValues);
@@ -2,8 +2,12 @@ package com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.value
 
 import java.util.Objects;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
+
 public class CandidateValue {
 
+    // candidate values stored with benefit rules have their id in `_id`
+    @JsonAlias("_id")
     private String id;
     // FIXME: rename to displayName
     private String label;
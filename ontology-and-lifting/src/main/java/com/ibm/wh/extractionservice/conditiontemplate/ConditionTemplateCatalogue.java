@@ -0,0 +1,40 @@
+package com.ibm.wh.extractionservice.conditiontemplate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.AbstractConditionTemplate;
+import com.ibm.wh.extractionservice.conditiontemplate.defaultvalue.ConditionTemplateDefaultValue;
+
+/**
+ * The condition templates, with their default values and the annotation rule tags, of a version of the domain
+ * ontology. Instances are immutable: a new catalogue is computed when the ontology changes.
+ */
+public final class ConditionTemplateCatalogue {
+
+    private final Collection<AbstractConditionTemplate> conditionTemplates;
+    private final Set<ConditionTemplateDefaultValue> defaultValues;
+    private final Set<AbstractConditionTemplate> annotationRuleTags;
+
+    ConditionTemplateCatalogue(Collection<AbstractConditionTemplate> conditionTemplates,
+                               Set<ConditionTemplateDefaultValue> defaultValues,
+                               Set<AbstractConditionTemplate> annotationRuleTags) {
+        this.conditionTemplates = Collections.unmodifiableCollection(conditionTemplates);
+        this.defaultValues = Collections.unmodifiableSet(defaultValues);
+        this.annotationRuleTags = Collections.unmodifiableSet(annotationRuleTags);
+    }
+
+    public Collection<AbstractConditionTemplate> getConditionTemplates() {
+        return conditionTemplates;
+    }
+
+    public Set<ConditionTemplateDefaultValue> getDefaultValues() {
+        return defaultValues;
+    }
+
+    public Set<AbstractConditionTemplate> getAnnotationRuleTags() {
+        return annotationRuleTags;
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.ibm.wh.extractionservice.conditiontemplate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import com.ibm.wh.extractionservice.support.PreSerializedJson;
+
+import io.swagger.annotations.ApiOperation;
+
+@RestController
+public class ConditionTemplateController {
+
+    public static final String ENDPOINT__GET_CONDITION_TEMPLATES = "/condition-templates";
+    public static final String ENDPOINT__GET_CONDITION_TEMPLATES_DEFAULT_VALUES = "/condition-templates/default-values";
+    public static final String ENDPOINT__GET_ANNOTATION_RULE_TAGS = "/condition-templates/annotation-rule-tags";
+
+    private final ConditionTemplateService conditionTemplateService;
+
+    @Autowired
+    public ConditionTemplateController(ConditionTemplateService conditionTemplateService) {
+        this.conditionTemplateService = conditionTemplateService;
+    }
+
+    @ApiOperation(value = "findAllConditionTemplates - Get the condition templates of the benefit rules of the ontology.",
+            notes = "Responses carry an ETag: send it back as If-None-Match to get a 304 Not Modified while the ontology is unchanged.")
+    @GetMapping(path = ENDPOINT__GET_CONDITION_TEMPLATES, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> findAllConditionTemplates(WebRequest request) {
+        return toResponse(conditionTemplateService.getConditionTemplates(), request);
+    }
+
+    @ApiOperation(value = "findAllDefaultValues - Get the default values of the condition templates.",
+            notes = "Responses carry an ETag: send it back as If-None-Match to get a 304 Not Modified while the ontology is unchanged.")
+    @GetMapping(path = ENDPOINT__GET_CONDITION_TEMPLATES_DEFAULT_VALUES, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> findAllDefaultValues(WebRequest request) {
+        return toResponse(conditionTemplateService.getDefaultValues(), request);
+    }
+
+    @ApiOperation(value = "findAnnotationRuleTags - Get the benefit rule types with the values of their object properties, as condition templates.",
+            notes = "Responses carry an ETag: send it back as If-None-Match to get a 304 Not Modified while the ontology is unchanged.")
+    @GetMapping(path = ENDPOINT__GET_ANNOTATION_RULE_TAGS, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> findAnnotationRuleTags(WebRequest request) {
+        return toResponse(conditionTemplateService.getAnnotationRuleTags(), request);
+    }
+
+    private static ResponseEntity<byte[]> toResponse(PreSerializedJson json, WebRequest request) {
+        // compares the If-None-Match header, if any, with the tag of the current version
+        if (request.checkNotModified(json.getETag()))
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(json.getETag()).build();
+        return ResponseEntity.ok()
+                .eTag(json.getETag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(json.getBytes());
+    }
+
+}
@@ -3,6 +3,8 @@ package com.ibm.wh.extractionservice.conditiontemplate;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
+
 import org.apache.jena.ontology.*;
 import org.apache.jena.rdf.model.Resource;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,34 +18,69 @@ import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.value.
 import com.ibm.wh.extractionservice.conditiontemplate.defaultvalue.ConditionTemplateDefaultValue;
 import com.ibm.wh.extractionservice.conditiontemplate.value.CandidateValueRepository;
 import com.ibm.wh.extractionservice.ontology.DomainOntology;
+import com.ibm.wh.extractionservice.support.jena.ModelCache;
 
 @Component
 public class ConditionTemplateRepository {
 
     private final CandidateValueRepository candidateValueRepository;
     private final DomainOntology domainOntology;
-    private final Collection<AbstractConditionTemplate> allConditionTemplates;
+    // templates, default values and tags may depend on any statement of the ontology
+    private final ModelCache<ConditionTemplateCatalogue> catalogue = new ModelCache<>(statement -> true, model -> buildCatalogue());
 
     @Autowired
     public ConditionTemplateRepository(CandidateValueRepository candidateValueRepository,
                                        DomainOntology domainOntology) {
         this.candidateValueRepository = candidateValueRepository;
         this.domainOntology = domainOntology;
-        this.allConditionTemplates = getConditionTemplates(domainOntology.getBenefitRuleClasses());
+        getCatalogue();
+    }
+
+    /**
+     * @return condition templates, default values and annotation rule tags of the current version of the ontology.
+     * The catalogue is computed again only after the ontology has changed, otherwise the same instance is returned.
+     */
+    public ConditionTemplateCatalogue getCatalogue() {
+        return catalogue.get(domainOntology.getOntModel());
+    }
+
+    @PreDestroy
+    public void close() {
+        catalogue.close();
     }
 
     public Collection<AbstractConditionTemplate> findAll() {
-        return this.allConditionTemplates;
+        return getCatalogue().getConditionTemplates();
     }
 
     public Set<ConditionTemplateDefaultValue> findAllDefaultValues() {
+        return getCatalogue().getDefaultValues();
+    }
+
+    public Set<AbstractConditionTemplate> findAnnotationRuleTags() {
+        return getCatalogue().getAnnotationRuleTags();
+    }
+
+    private ConditionTemplateCatalogue buildCatalogue() {
+        // the union classes having each class as operand, listed once rather than for every class visited
+        Map<Resource, Set<OntClass>> unionClassesByOperand = new HashMap<>();
+        domainOntology.getOntModel().listUnionClasses().forEachRemaining(unionClass -> unionClass.getOperands().asJavaList()
+                .forEach(operand -> unionClassesByOperand.computeIfAbsent(operand.asResource(), key -> new HashSet<>()).add(unionClass)));
+        Collection<AbstractConditionTemplate> conditionTemplates = domainOntology.getBenefitRuleClasses().stream()
+                .map(rootClass -> getConditionTemplates(rootClass, unionClassesByOperand))
+                .flatMap(Collection::stream)
+                .collect(Collectors.toSet());
+        return new ConditionTemplateCatalogue(conditionTemplates, computeDefaultValues(), computeAnnotationRuleTags());
+    }
+
+    private Set<ConditionTemplateDefaultValue> computeDefaultValues() {
         Map<Resource, String> allPropertiesWithDefaultValues = this.domainOntology.getAllPropertiesWithDefaultValues();
         return allPropertiesWithDefaultValues.entrySet().stream()
                 .map(entry -> new ConditionTemplateDefaultValue(entry.getKey().getURI(), entry.getValue()))
                 .collect(Collectors.toSet());
     }
 
-    public  Set<AbstractConditionTemplate> findAnnotationRuleTags () {
+    private Set<AbstractConditionTemplate> computeAnnotationRuleTags() {
         Set<AbstractConditionTemplate> res = new HashSet<> ();
         // get all subtypes of BenefitRules
         Set<OntClass> benefitRuleTypes = this.domainOntology.getBenefitRuleClasses();
@@ -65,17 +102,10 @@ public class ConditionTemplateRepository {
         return res;
     }
 
-    private Collection<AbstractConditionTemplate> getConditionTemplates(Collection<OntClass> rootClasses) {
-        return rootClasses.stream()
-                .map(this::getConditionTemplates)
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
-    }
-
-    private Collection<AbstractConditionTemplate> getConditionTemplates(OntClass rootClass) {
+    private Collection<AbstractConditionTemplate> getConditionTemplates(OntClass rootClass, Map<Resource, Set<OntClass>> unionClassesByOperand) {
         // get properties of the class unions that include the current rootClass
-        Set<AbstractConditionTemplate> conditionTemplates = getAllClassUnionsWith(rootClass).stream()
-                .map(this::getConditionTemplates)
+        Set<AbstractConditionTemplate> conditionTemplates = unionClassesByOperand.getOrDefault(rootClass, Collections.emptySet()).stream()
+                .map(unionClass -> getConditionTemplates(unionClass, unionClassesByOperand))
                 .flatMap(Collection::stream)
                 .collect(Collectors.toSet());
 
@@ -90,12 +120,12 @@ public class ConditionTemplateRepository {
                 if (range.isUnionClass()) {
                     Set<AbstractConditionTemplate> conditionTemplatesOfOperands = range.asUnionClass().getOperands().asJavaList().stream()
                             .filter(node -> node.canAs(OntClass.class))
-                            .map(node -> getConditionTemplates(node.as(OntClass.class)))
+                            .map(node -> getConditionTemplates(node.as(OntClass.class), unionClassesByOperand))
                             .flatMap(Collection::stream)
                             .collect(Collectors.toSet());
                     conditionTemplates.addAll(conditionTemplatesOfOperands);
                 } else {
-                    conditionTemplates.addAll(getConditionTemplates(range));
+                    conditionTemplates.addAll(getConditionTemplates(range, unionClassesByOperand));
                 }
             }
         }
@@ -103,17 +133,6 @@ public class ConditionTemplateRepository {
         return conditionTemplates;
     }
 
-    private static Collection<? extends OntClass> getAllClassUnionsWith(OntClass ontClass) {
-        return ontClass.getOntModel().listUnionClasses()
-                .filterKeep(unionClass -> unionContains(unionClass, ontClass))
-                .toSet();
-    }
-
-    private static boolean unionContains(UnionClass unionClass, OntClass ontClass) {
-        return unionClass.getOperands().asJavaList().stream()
-                .anyMatch(unionComponent -> unionComponent.asResource().equals(ontClass));
-    }
-
     private AbstractConditionTemplate toConditionTemplate(OntProperty property) {
         if (property.isDatatypeProperty()) {
             return new FreeTextConditionTemplate(property.getURI(), displayNameOf(property));
@@ -137,22 +156,8 @@ public class ConditionTemplateRepository {
     }
 
     private Set<CandidateValue> candidateValues(OntClass ontClass) {
-        if (ontClass.isUnionClass()) return candidateValuesOfUnionClass(ontClass.asUnionClass());
-        return ontClass.listInstances()
-                .mapWith(OntResource::getURI)
-                .mapWith(candidateValueRepository::findById)
-                .filterKeep(Optional::isPresent)
-                .mapWith(Optional::get)
-                .toSet();
-    }
-
-    private Set<CandidateValue> candidateValuesOfUnionClass(UnionClass unionClass) {
-        return unionClass.getOperands().asJavaList()
-                .stream()
-                .filter(node -> node.canAs(OntClass.class))
-                .map(node -> candidateValues(node.as(OntClass.class)))
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
+        // resolved once per version of the ontology, and shared by all the templates with the same range
+        return candidateValueRepository.findAllByClass(ontClass);
     }
 
 }
@@ -0,0 +1,78 @@
+package com.ibm.wh.extractionservice.conditiontemplate;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ibm.wh.extractionservice.commons.benefitrule.conditiontemplate.AbstractConditionTemplate;
+import com.ibm.wh.extractionservice.conditiontemplate.defaultvalue.ConditionTemplateDefaultValue;
+import com.ibm.wh.extractionservice.support.PreSerializedJson;
+
+/**
+ * Serves the condition template catalogue as JSON serialized once per version of the catalogue
+ */
+@Service
+public class ConditionTemplateService {
+
+    private final ConditionTemplateRepository conditionTemplateRepository;
+    private final ObjectMapper objectMapper;
+    private volatile SerializedCatalogue serializedCatalogue;
+
+    @Autowired
+    public ConditionTemplateService(ConditionTemplateRepository conditionTemplateRepository, ObjectMapper objectMapper) {
+        this.conditionTemplateRepository = conditionTemplateRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public PreSerializedJson getConditionTemplates() {
+        return getSerializedCatalogue().conditionTemplates;
+    }
+
+    public PreSerializedJson getDefaultValues() {
+        return getSerializedCatalogue().defaultValues;
+    }
+
+    public PreSerializedJson getAnnotationRuleTags() {
+        return getSerializedCatalogue().annotationRuleTags;
+    }
+
+    private SerializedCatalogue getSerializedCatalogue() {
+        ConditionTemplateCatalogue catalogue = conditionTemplateRepository.getCatalogue();
+        SerializedCatalogue current = serializedCatalogue;
+        if (current != null && current.catalogue == catalogue) return current;
+        // concurrent requests may serialize the same catalogue twice, with the same result
+        current = new SerializedCatalogue(catalogue, objectMapper);
+        serializedCatalogue = current;
+        return current;
+    }
+
+    private static class SerializedCatalogue {
+
+        private final ConditionTemplateCatalogue catalogue;
+        private final PreSerializedJson conditionTemplates;
+        private final PreSerializedJson defaultValues;
+        private final PreSerializedJson annotationRuleTags;
+
+        SerializedCatalogue(ConditionTemplateCatalogue catalogue, ObjectMapper objectMapper) {
+            this.catalogue = catalogue;
+            this.conditionTemplates = PreSerializedJson.of(objectMapper, sortedById(catalogue.getConditionTemplates()));
+            this.defaultValues = PreSerializedJson.of(objectMapper, catalogue.getDefaultValues().stream()
+                    .sorted(Comparator.comparing(ConditionTemplateDefaultValue::getConditionTemplateId, Comparator.nullsFirst(Comparator.naturalOrder())))
+                    .collect(Collectors.toList()));
+            this.annotationRuleTags = PreSerializedJson.of(objectMapper, sortedById(catalogue.getAnnotationRuleTags()));
+        }
+
+        private static List<AbstractConditionTemplate> sortedById(Collection<AbstractConditionTemplate> conditionTemplates) {
+            return conditionTemplates.stream()
+                    .sorted(Comparator.comparing(AbstractConditionTemplate::getId))
+                    .collect(Collectors.toList());
+        }
+
+    }
+
+}
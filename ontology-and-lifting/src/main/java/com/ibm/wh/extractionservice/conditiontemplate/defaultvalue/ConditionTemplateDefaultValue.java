@@ -18,6 +18,10 @@ public class ConditionTemplateDefaultValue {
         this.value = value;
     }
 
+    public String getConditionTemplateId() {
+        return conditionTemplateId;
+    }
+
     public String getValue() {
         return value;
     }
@@ -1,12 +1,24 @@
 package com.ibm.wh.extractionservice.conditiontemplate.value;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
+
 import org.apache.jena.ontology.Individual;
+import org.apache.jena.ontology.OntClass;
 import org.apache.jena.ontology.OntResource;
+import org.apache.jena.ontology.UnionClass;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
@@ -15,6 +27,8 @@ import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity;
 import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity.Type;
 import com.ibm.wh.extractionservice.externalentity.ExternalEntityRepository;
 import com.ibm.wh.extractionservice.ontology.DomainOntology;
+import com.ibm.wh.extractionservice.support.jena.ModelCache;
+import com.ibm.wh.extractionservice.support.jena.SchemaIndex;
 
 @Repository
 public class CandidateValueRepository {
@@ -23,11 +37,20 @@ public class CandidateValueRepository {
 
     private final Set<String> groupExternalEntitiesIds;
 
+    // candidate values already resolved for the current version of the ontology
+    private final ModelCache<ResolvedCandidateValues> resolvedCandidateValues;
+
     @Autowired
     public CandidateValueRepository(ExternalEntityRepository externalEntityRepository,
                                     DomainOntology domainOntology) {
         this.domainOntology = domainOntology;
         this.groupExternalEntitiesIds = getAllGroupExternalEntitiesIds(externalEntityRepository);
+        // individuals, their types and instances of classes, display names and claim values
+        this.resolvedCandidateValues = new ModelCache<>(
+                statement -> statement.getPredicate().equals(RDF.type)
+                        || SchemaIndex.isSchemaStatement(statement)
+                        || domainOntology.isAnnotationStatement(statement),
+                model -> new ResolvedCandidateValues());
     }
 
     private Set<String> getAllGroupExternalEntitiesIds(ExternalEntityRepository externalEntityRepository) {
@@ -37,16 +60,109 @@ public class CandidateValueRepository {
                 .collect(Collectors.toSet());
     }
 
+    @PreDestroy
+    public void close() {
+        resolvedCandidateValues.close();
+    }
+
     public Optional<CandidateValue> findById(String id) {
-        return domainOntology.getIndividualByUri(id).map(this::toCandidateValue);
+        return findById(id, getResolvedCandidateValues());
+    }
+
+    // only the values found are kept, so that looking up the ids of the extracted entities does not grow the cache
+    private Optional<CandidateValue> findById(String id, ResolvedCandidateValues resolved) {
+        CandidateValue candidateValue = resolved.byId.get(id);
+        if (candidateValue != null) return Optional.of(candidateValue);
+        Optional<CandidateValue> found = domainOntology.getIndividualByUri(id).map(this::toCandidateValue);
+        found.ifPresent(value -> resolved.byId.putIfAbsent(id, value));
+        return found;
+    }
+
+    /**
+     * @return the candidate values of the instances of the class, or of the operands of the class if it is a union.
+     * The set is shared by all the callers and cannot be modified.
+     */
+    public Set<CandidateValue> findAllByClass(OntClass ontClass) {
+        return findAllByClass(ontClass, getResolvedCandidateValues());
+    }
+
+    private Set<CandidateValue> findAllByClass(OntClass ontClass, ResolvedCandidateValues resolved) {
+        Set<CandidateValue> candidateValues = resolved.byClass.get(ontClass);
+        if (candidateValues != null) return candidateValues;
+        // not computed within computeIfAbsent, since the operands of a union are resolved recursively
+        candidateValues = Collections.unmodifiableSet(ontClass.isUnionClass()
+                ? candidateValuesOfUnionClass(ontClass.asUnionClass(), resolved)
+                : candidateValuesOfInstances(ontClass, resolved));
+        Set<CandidateValue> previous = resolved.byClass.putIfAbsent(ontClass, candidateValues);
+        return previous == null ? candidateValues : previous;
+    }
+
+    private Set<CandidateValue> candidateValuesOfInstances(OntClass ontClass, ResolvedCandidateValues resolved) {
+        Set<CandidateValue> candidateValues = new HashSet<>();
+        ExtendedIterator<? extends OntResource> instances = ontClass.listInstances();
+        try {
+            while (instances.hasNext()) {
+                OntResource instance = instances.next();
+                if (instance.isURIResource()) findById(instance.getURI(), resolved).ifPresent(candidateValues::add);
+            }
+        } finally {
+            instances.close();
+        }
+        return candidateValues;
+    }
+
+    private Set<CandidateValue> candidateValuesOfUnionClass(UnionClass unionClass, ResolvedCandidateValues resolved) {
+        return unionClass.getOperands().asJavaList()
+                .stream()
+                .filter(node -> node.canAs(OntClass.class))
+                .map(node -> findAllByClass(node.as(OntClass.class), resolved))
+                .flatMap(Collection::stream)
+                .collect(Collectors.toSet());
+    }
+
+    private ResolvedCandidateValues getResolvedCandidateValues() {
+        return resolvedCandidateValues.get(domainOntology.getOntModel());
     }
 
+    /**
+     * Scans the extracted entities when the id is not in the ontology: to resolve many ids against the same entities
+     * use {@link #findById(String, ExtractedEntities)} or {@link #findAllById(Collection, ExtractedEntities)}
+     */
     public Optional<CandidateValue> findById(String id, Collection<ExternalEntity> extractedEntities) {
         Optional<CandidateValue> candidateValueInOntology = findById(id);
         if (candidateValueInOntology.isPresent()) return candidateValueInOntology;
         else return findInExtractedEntities(id, extractedEntities);
     }
 
+    public Optional<CandidateValue> findById(String id, ExtractedEntities extractedEntities) {
+        Optional<CandidateValue> candidateValueInOntology = findById(id);
+        if (candidateValueInOntology.isPresent()) return candidateValueInOntology;
+        else return extractedEntities.findById(id).map(this::toCandidateValue);
+    }
+
+    /**
+     * @return the candidate values of the ids found in the ontology, by id, in the order of the ids
+     */
+    public Map<String, CandidateValue> findAllById(Collection<String> ids) {
+        return findAllById(ids, ExtractedEntities.of(Collections.emptyList()));
+    }
+
+    /**
+     * @return the candidate values of the ids found in the ontology or, if not there, among the extracted entities,
+     * by id, in the order of the ids
+     */
+    public Map<String, CandidateValue> findAllById(Collection<String> ids, ExtractedEntities extractedEntities) {
+        ResolvedCandidateValues resolved = getResolvedCandidateValues();
+        Map<String, CandidateValue> candidateValuesById = new LinkedHashMap<>();
+        for (String id : ids) {
+            if (candidateValuesById.containsKey(id)) continue;
+            Optional<CandidateValue> candidateValue = findById(id, resolved);
+            if (!candidateValue.isPresent()) candidateValue = extractedEntities.findById(id).map(this::toCandidateValue);
+            candidateValue.ifPresent(value -> candidateValuesById.put(id, value));
+        }
+        return candidateValuesById;
+    }
+
     private Optional<CandidateValue> findInExtractedEntities(String id, Collection<ExternalEntity> extractedEntities) {
         return extractedEntities.stream()
                 .filter(entity -> entity.getEntityId().equals(id))
@@ -79,4 +195,11 @@ public class CandidateValueRepository {
         return groupExternalEntitiesIds.contains(individual.getURI());
     }
 
+    private static class ResolvedCandidateValues {
+
+        private final Map<String, CandidateValue> byId = new ConcurrentHashMap<>();
+        private final Map<Resource, Set<CandidateValue>> byClass = new ConcurrentHashMap<>();
+
+    }
+
 }
@@ -0,0 +1,37 @@
+package com.ibm.wh.extractionservice.conditiontemplate.value;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity;
+
+/**
+ * The entities extracted from a document, indexed by entity id, to resolve many candidate values against them, see
+ * {@link CandidateValueRepository#findById(String, ExtractedEntities)}. Build it once per document: when several
+ * entities have the same id, the first one is kept. Instances are immutable.
+ */
+public final class ExtractedEntities {
+
+    private final Map<String, ExternalEntity> entitiesById;
+
+    private ExtractedEntities(Map<String, ExternalEntity> entitiesById) {
+        this.entitiesById = entitiesById;
+    }
+
+    public static ExtractedEntities of(Collection<ExternalEntity> extractedEntities) {
+        Map<String, ExternalEntity> entitiesById = new HashMap<>(extractedEntities.size() * 2);
+        for (ExternalEntity entity : extractedEntities) entitiesById.putIfAbsent(entity.getEntityId(), entity);
+        return new ExtractedEntities(entitiesById);
+    }
+
+    public Optional<ExternalEntity> findById(String entityId) {
+        return Optional.ofNullable(entitiesById.get(entityId));
+    }
+
+    public int size() {
+        return entitiesById.size();
+    }
+
+}
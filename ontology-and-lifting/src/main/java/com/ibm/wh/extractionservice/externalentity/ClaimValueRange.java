@@ -0,0 +1,86 @@
+package com.ibm.wh.extractionservice.externalentity;
+
+import static java.lang.String.*;
+
+import java.util.Objects;
+
+/**
+ * An inclusive range of claim values sharing the same alphabetic prefix (e.g. `D0100-D0999`), the same alphabetic
+ * postfix (e.g. `0100T-0999T`) or no letter at all (e.g. `97010-97039`).
+ */
+public class ClaimValueRange {
+
+    private final String prefix;
+    private final String postfix;
+    private final int start;
+    private final int end;
+
+    private ClaimValueRange(String prefix, String postfix, int start, int end) {
+        this.prefix = prefix;
+        this.postfix = postfix;
+        this.start = start;
+        this.end = end;
+    }
+
+    public static ClaimValueRange of(String startCode, String endCode) {
+        // valid range:
+        // 1. code starts OR ends with a letter - ie Dental procedure codes - or is numeric
+        // 2. startCode smaller than endCode
+        ClaimValueRange range;
+        if (Character.isAlphabetic(startCode.charAt(0))) {
+            if (!startCode.substring(0, 1).equals(endCode.substring(0, 1)))
+                throw new IllegalArgumentException(format("Invalid range.  Entity range start and end codes do not begin with same letter [%s], [%s]", startCode, endCode));
+            range = new ClaimValueRange(startCode.substring(0, 1), "", Integer.parseInt(startCode.substring(1)), Integer.parseInt(endCode.substring(1)));
+        } else if (Character.isAlphabetic(startCode.charAt(startCode.length() - 1))) {
+            if (!startCode.substring(startCode.length() - 1).equals(endCode.substring(endCode.length() - 1)))
+                throw new IllegalArgumentException(format("Invalid range.  Entity range start and end codes do not end with same letter [%s], [%s]", startCode, endCode));
+            range = new ClaimValueRange("", startCode.substring(startCode.length() - 1),
+                    Integer.parseInt(startCode.substring(0, startCode.length() - 1)), Integer.parseInt(endCode.substring(0, endCode.length() - 1)));
+        } else {
+            range = new ClaimValueRange("", "", Integer.parseInt(startCode), Integer.parseInt(endCode));
+        }
+
+        if (range.start >= range.end)
+            throw new IllegalArgumentException(format("Invalid range. Entity range start number is not larger than end number [%s], [%s]", startCode, endCode));
+        return range;
+    }
+
+    /**
+     * The letter every claim value in the range starts with, empty if none
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * The letter every claim value in the range ends with, empty if none
+     */
+    public String getPostfix() {
+        return postfix;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ClaimValueRange that = (ClaimValueRange) o;
+        return start == that.start &&
+                end == that.end &&
+                Objects.equals(prefix, that.prefix) &&
+                Objects.equals(postfix, that.postfix);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(prefix, postfix, start, end);
+    }
+
+}
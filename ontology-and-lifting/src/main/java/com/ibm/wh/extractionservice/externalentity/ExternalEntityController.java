@@ -1,6 +1,7 @@
 package com.ibm.wh.extractionservice.externalentity;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Optional;
@@ -15,12 +16,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity;
 import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity.Type;
 import com.ibm.wh.extractionservice.externalentity.lifting.LiftingConfiguration;
 import com.ibm.wh.extractionservice.externalentity.lifting.LiftingService;
+import com.ibm.wh.extractionservice.support.NdjsonWriter;
 
 @RestController
 public class ExternalEntityController {
@@ -28,16 +31,20 @@ public class ExternalEntityController {
     public static final String ENDPOINT__GET_ALL_GROUP_EXTERNAL_ENTITIES = "/external-entities/group";
     public static final String ENDPOINT__POST_GROUP_EXTERNAL_ENTITIES = "/external-entities/process-group";
     public static final String ENDPOINT__POST_GROUP_EXTERNAL_ENTITIES_CSV = "/external-entities/process-group-csv";
+    public static final String ENDPOINT__POST_GROUP_EXTERNAL_ENTITIES_CSV_AS_NDJSON = "/external-entities/process-group-csv-batch";
     public static final String ENDPOINT__GET_ALL_EXTERNAL_ENTITIES = "/external-entities";
     public static final String ENDPOINT__LIFT_EXTERNAL_ENTITIES = "/external-entities/lift";
+    public static final String ENDPOINT__LIFT_EXTERNAL_ENTITIES_AS_NDJSON = "/external-entities/lift-stream";
 
     private final ExternalEntityService externalEntityService;
     private final LiftingService liftingService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public ExternalEntityController(ExternalEntityService externalEntityService, LiftingService liftingService) {
+    public ExternalEntityController(ExternalEntityService externalEntityService, LiftingService liftingService, ObjectMapper objectMapper) {
         this.externalEntityService = externalEntityService;
         this.liftingService = liftingService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping(path = ENDPOINT__GET_ALL_GROUP_EXTERNAL_ENTITIES)
@@ -68,6 +75,22 @@ public class ExternalEntityController {
         return externalEntityService.processGroupAdditionCSV(dataAsCsvFile.getInputStream());
     }
 
+    @ApiOperation(value = "generateGroupsNdjsonFromCsv - Use CSV input to generate JSON for custom groups, reporting the errors of each row.",
+            notes = "Same as " + ENDPOINT__POST_GROUP_EXTERNAL_ENTITIES_CSV + ", but the codes and ranges of all the rows are resolved together " +
+                    "and a GroupAdditionResult is streamed back for each row as newline-delimited JSON: either the group or the " +
+                    "errors of the row, so that invalid rows do not abort the whole CSV.")
+    @PostMapping(path = ENDPOINT__POST_GROUP_EXTERNAL_ENTITIES_CSV_AS_NDJSON, consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = NdjsonWriter.MEDIA_TYPE_VALUE)
+    public StreamingResponseBody generateGroupsNdjsonFromCsv(
+            @ApiParam( name="dataAsCsvFile", value = "A CSV file containing group info, including the proposed member ranges ", required = true)
+            @RequestPart MultipartFile dataAsCsvFile) {
+        return outputStream -> {
+            try (InputStream dataAsCsvStream = dataAsCsvFile.getInputStream();
+                 NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream)) {
+                externalEntityService.processGroupAdditionCSV(dataAsCsvStream, writer::write);
+            }
+        };
+    }
+
     @GetMapping(path = ENDPOINT__GET_ALL_EXTERNAL_ENTITIES)
     public Set<? extends ExternalEntity> findAllExternalEntities(@RequestParam Optional<String> entityId) {
         if (entityId.isPresent())
@@ -89,4 +112,22 @@ public class ExternalEntityController {
         return liftingService.liftEntities(dataAsCsvFile.getInputStream(), tag, configuration);
     }
 
+    @ApiOperation(value = "liftAsNdjson - Lift the entities in a CSV file and stream them back as newline-delimited JSON.",
+            notes = "Same as " + ENDPOINT__LIFT_EXTERNAL_ENTITIES + ", but the CSV is read row by row and entities are written " +
+                    "one per line, sorted by entity id, while duplicated entities are merged in bounded memory.")
+    @PostMapping(path = ENDPOINT__LIFT_EXTERNAL_ENTITIES_AS_NDJSON, consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = NdjsonWriter.MEDIA_TYPE_VALUE)
+    public StreamingResponseBody liftAsNdjson(
+            @RequestPart MultipartFile dataAsCsvFile,
+            @RequestPart String tag,
+            @RequestPart String configurationAsJsonString
+    ) throws IOException {
+        LiftingConfiguration configuration = new ObjectMapper().readValue(configurationAsJsonString, LiftingConfiguration.class);
+        return outputStream -> {
+            try (InputStream dataAsCsvStream = dataAsCsvFile.getInputStream();
+                 NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream)) {
+                liftingService.liftEntities(dataAsCsvStream, tag, configuration, writer::write);
+            }
+        };
+    }
+
 }
@@ -24,7 +24,7 @@ import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity.Type;
 @Repository
 public class ExternalEntityFilesRepository implements ExternalEntityRepository {
 
-    private final Map<String, ExternalEntity> entityIdToEntity;
+    private final ExternalEntityIndex index;
     private final ObjectMapper objectMapper;
 
     @Autowired
@@ -33,7 +33,7 @@ public class ExternalEntityFilesRepository implements ExternalEntityRepository {
             ObjectMapper objectMapper
     ) {
         this.objectMapper = objectMapper;
-        this.entityIdToEntity = initializeEntitiesMap(externalEntitiesFilePaths);
+        this.index = new ExternalEntityIndex(initializeEntitiesMap(externalEntitiesFilePaths));
     }
 
     private Map<String, ExternalEntity> initializeEntitiesMap(Collection<String> externalEntitiesFilePaths) {
@@ -71,19 +71,37 @@ public class ExternalEntityFilesRepository implements ExternalEntityRepository {
 
     @Override
     public Set<ExternalEntity> findAll() {
-        return new HashSet<>(entityIdToEntity.values());
+        return index.findAll();
     }
 
     @Override
     public Set<ExternalEntity> findByType(Type type) {
-        return entityIdToEntity.values().stream()
-                .filter(entity -> entity.getType().equals(type))
-                .collect(Collectors.toSet());
+        return index.findByType(type);
+    }
+
+    @Override
+    public Set<ExternalEntity> findByEntityTypeId(String entityTypeId) {
+        return index.findByEntityTypeId(entityTypeId);
+    }
+
+    @Override
+    public Set<ExternalEntity> findByTag(String tag) {
+        return index.findByTag(tag);
+    }
+
+    @Override
+    public Set<ExternalEntity> findByClaimValueInRange(ClaimValueRange range) {
+        return index.findByClaimValueInRange(range);
+    }
+
+    @Override
+    public Map<ClaimValueRange, Set<ExternalEntity>> findByClaimValueInRanges(Collection<ClaimValueRange> ranges) {
+        return index.findByClaimValueInRanges(ranges);
     }
 
     @Override
     public ExternalEntity findByEntityId(String entityId) {
-        return Optional.ofNullable(entityIdToEntity.getOrDefault(entityId, null))
+        return index.findByEntityId(entityId)
                 .orElseThrow(() -> new IllegalArgumentException(format("Entity [%s] not found!", entityId)));
     }
 
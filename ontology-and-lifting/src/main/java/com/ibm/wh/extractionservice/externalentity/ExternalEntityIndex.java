@@ -0,0 +1,181 @@
+package com.ibm.wh.extractionservice.externalentity;
+
+import static java.util.stream.Collectors.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity;
+import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity.Type;
+
+/**
+ * Immutable secondary indexes over a set of external entities. All the returned sets are unmodifiable.
+ */
+class ExternalEntityIndex {
+
+    private final Map<String, ExternalEntity> entityIdToEntity;
+    private final Set<ExternalEntity> allEntities;
+    private final Map<Type, Set<ExternalEntity>> entitiesByType;
+    private final Map<String, Set<ExternalEntity>> entitiesByEntityTypeId;
+    private final Map<String, Set<ExternalEntity>> entitiesByTag;
+    private final ClaimValueIndex claimValueIndex;
+
+    ExternalEntityIndex(Map<String, ExternalEntity> entityIdToEntity) {
+        this.entityIdToEntity = Collections.unmodifiableMap(new HashMap<>(entityIdToEntity));
+        this.allEntities = Collections.unmodifiableSet(new HashSet<>(entityIdToEntity.values()));
+        this.entitiesByType = indexByType(allEntities);
+        this.entitiesByEntityTypeId = index(allEntities, ExternalEntity::getEntityTypeIds);
+        this.entitiesByTag = index(allEntities, entity -> entity.getTag() == null ? Collections.emptySet() : Collections.singleton(entity.getTag()));
+        this.claimValueIndex = new ClaimValueIndex(allEntities);
+    }
+
+    private static Map<Type, Set<ExternalEntity>> indexByType(Collection<ExternalEntity> entities) {
+        Map<Type, Set<ExternalEntity>> entitiesByType = new EnumMap<>(Type.class);
+        for (Type type : Type.values()) {
+            entitiesByType.put(type, Collections.unmodifiableSet(entities.stream()
+                    .filter(entity -> type.equals(entity.getType()))
+                    .collect(toSet())));
+        }
+        return entitiesByType;
+    }
+
+    private static Map<String, Set<ExternalEntity>> index(Collection<ExternalEntity> entities, Function<ExternalEntity, Collection<String>> keys) {
+        Map<String, Set<ExternalEntity>> index = new HashMap<>();
+        for (ExternalEntity entity : entities) {
+            for (String key : keys.apply(entity)) {
+                index.computeIfAbsent(key, k -> new HashSet<>()).add(entity);
+            }
+        }
+        index.replaceAll((key, indexed) -> Collections.unmodifiableSet(indexed));
+        return index;
+    }
+
+    Set<ExternalEntity> findAll() {
+        return allEntities;
+    }
+
+    Optional<ExternalEntity> findByEntityId(String entityId) {
+        return Optional.ofNullable(entityIdToEntity.get(entityId));
+    }
+
+    Set<ExternalEntity> findByType(Type type) {
+        return entitiesByType.get(type);
+    }
+
+    Set<ExternalEntity> findByEntityTypeId(String entityTypeId) {
+        return entitiesByEntityTypeId.getOrDefault(entityTypeId, Collections.emptySet());
+    }
+
+    Set<ExternalEntity> findByTag(String tag) {
+        return entitiesByTag.getOrDefault(tag, Collections.emptySet());
+    }
+
+    Set<ExternalEntity> findByClaimValueInRange(ClaimValueRange range) {
+        return claimValueIndex.find(range);
+    }
+
+    Map<ClaimValueRange, Set<ExternalEntity>> findByClaimValueInRanges(Collection<ClaimValueRange> ranges) {
+        return claimValueIndex.findAll(ranges);
+    }
+
+    /**
+     * Claim values sorted by their numeric part, grouped by their alphabetic prefix or postfix. A claim value such as
+     * `D0120` is indexed by prefix `D` and number 120, `0120T` by postfix `T` and number 120, `97010` only by number.
+     */
+    private static class ClaimValueIndex {
+
+        private final Map<String, NavigableMap<Integer, List<ExternalEntity>>> byPrefix = new HashMap<>();
+        private final Map<String, NavigableMap<Integer, List<ExternalEntity>>> byPostfix = new HashMap<>();
+        private final NavigableMap<Integer, List<ExternalEntity>> numeric = new TreeMap<>();
+
+        ClaimValueIndex(Collection<ExternalEntity> entities) {
+            for (ExternalEntity entity : entities) {
+                String claimValue = entity.getClaimValue();
+                if (claimValue == null || claimValue.isEmpty()) continue;
+                int last = claimValue.length() - 1;
+                if (Character.isAlphabetic(claimValue.charAt(0)))
+                    add(byPrefix.computeIfAbsent(claimValue.substring(0, 1), letter -> new TreeMap<>()), claimValue.substring(1), entity);
+                if (Character.isAlphabetic(claimValue.charAt(last)))
+                    add(byPostfix.computeIfAbsent(claimValue.substring(last), letter -> new TreeMap<>()), claimValue.substring(0, last), entity);
+                add(numeric, claimValue, entity);
+            }
+        }
+
+        private static void add(NavigableMap<Integer, List<ExternalEntity>> index, String number, ExternalEntity entity) {
+            if (!StringUtils.isNumeric(number)) return;
+            try {
+                index.computeIfAbsent(Integer.parseInt(number), n -> new ArrayList<>(1)).add(entity);
+            } catch (NumberFormatException e) {
+                // too big to be part of any range
+            }
+        }
+
+        Set<ExternalEntity> find(ClaimValueRange range) {
+            NavigableMap<Integer, List<ExternalEntity>> index = getIndex(range);
+            if (index == null) return Collections.emptySet();
+
+            Set<ExternalEntity> entities = new HashSet<>();
+            index.subMap(range.getStart(), true, range.getEnd(), true).values().forEach(entities::addAll);
+            return Collections.unmodifiableSet(entities);
+        }
+
+        /**
+         * Resolves many ranges with a single sweep over each index, instead of a lookup per range: ranges are sorted by
+         * start and each indexed claim value is added to the ranges open at that point. Overlapping ranges are
+         * therefore read only once.
+         */
+        Map<ClaimValueRange, Set<ExternalEntity>> findAll(Collection<ClaimValueRange> ranges) {
+            Map<ClaimValueRange, Set<ExternalEntity>> entitiesByRange = new HashMap<>();
+            Map<NavigableMap<Integer, List<ExternalEntity>>, List<ClaimValueRange>> rangesByIndex = new IdentityHashMap<>();
+            for (ClaimValueRange range : ranges) {
+                if (entitiesByRange.put(range, new HashSet<>()) != null) continue;
+                NavigableMap<Integer, List<ExternalEntity>> index = getIndex(range);
+                if (index != null) rangesByIndex.computeIfAbsent(index, i -> new ArrayList<>()).add(range);
+            }
+            rangesByIndex.forEach((index, indexRanges) -> sweep(index, indexRanges, entitiesByRange));
+            entitiesByRange.replaceAll((range, entities) -> Collections.unmodifiableSet(entities));
+            return entitiesByRange;
+        }
+
+        private static void sweep(NavigableMap<Integer, List<ExternalEntity>> index, List<ClaimValueRange> ranges, Map<ClaimValueRange, Set<ExternalEntity>> entitiesByRange) {
+            ranges.sort(Comparator.comparingInt(ClaimValueRange::getStart));
+            int end = ranges.stream().mapToInt(ClaimValueRange::getEnd).max().orElse(Integer.MIN_VALUE);
+            PriorityQueue<ClaimValueRange> openRanges = new PriorityQueue<>(Comparator.comparingInt(ClaimValueRange::getEnd));
+            int next = 0;
+            for (Map.Entry<Integer, List<ExternalEntity>> entry : index.subMap(ranges.get(0).getStart(), true, end, true).entrySet()) {
+                int number = entry.getKey();
+                while (next < ranges.size() && ranges.get(next).getStart() <= number)
+                    openRanges.add(ranges.get(next++));
+                while (!openRanges.isEmpty() && openRanges.peek().getEnd() < number)
+                    openRanges.poll();
+                for (ClaimValueRange range : openRanges) {
+                    entitiesByRange.get(range).addAll(entry.getValue());
+                }
+            }
+        }
+
+        private NavigableMap<Integer, List<ExternalEntity>> getIndex(ClaimValueRange range) {
+            if (!range.getPrefix().isEmpty()) return byPrefix.get(range.getPrefix());
+            if (!range.getPostfix().isEmpty()) return byPostfix.get(range.getPostfix());
+            return numeric;
+        }
+
+    }
+
+}
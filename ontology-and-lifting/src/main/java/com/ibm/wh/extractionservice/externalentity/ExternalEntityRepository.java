@@ -1,6 +1,9 @@
 package com.ibm.wh.extractionservice.externalentity;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+
 import org.springframework.data.repository.Repository;
 
 import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity;
@@ -12,5 +15,13 @@ public interface  ExternalEntityRepository extends Repository<ExternalEntity, St
 
     Set<ExternalEntity> findByType(Type type);
 
+    Set<ExternalEntity> findByEntityTypeId(String entityTypeId);
+
+    Set<ExternalEntity> findByTag(String tag);
+
+    Set<ExternalEntity> findByClaimValueInRange(ClaimValueRange range);
+
+    Map<ClaimValueRange, Set<ExternalEntity>> findByClaimValueInRanges(Collection<ClaimValueRange> ranges);
+
     ExternalEntity findByEntityId(String entityId);
 }
@@ -8,14 +8,18 @@ import com.ibm.wh.extractionservice.commons.externalentity.type.IndividualExtern
 import com.ibm.wh.extractionservice.externalentity.groupAddition.GroupAdditionConfig;
 import com.ibm.wh.extractionservice.externalentity.groupAddition.GroupAdditionAll;
 import com.ibm.wh.extractionservice.externalentity.groupAddition.GroupAdditionItem;
+import com.ibm.wh.extractionservice.externalentity.groupAddition.GroupAdditionResult;
 import com.opencsv.CSVReader;
-import org.apache.commons.lang3.StringUtils;
+import com.opencsv.exceptions.CsvValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -55,7 +59,10 @@ public class ExternalEntityService {
 
     private IndividualExternalEntity getEntity(String namespace, String beginCode) {
         String resourceId = namespace.toLowerCase() + "procedure_code_" + beginCode.trim().toLowerCase();
-        return (IndividualExternalEntity) this.externalEntityRepository.findByEntityId(resourceId);
+        ExternalEntity entity = this.externalEntityRepository.findByEntityId(resourceId);
+        if (!(entity instanceof IndividualExternalEntity))
+            throw new IllegalArgumentException(String.format("No IndividualExternalEntity with code %s can be found", beginCode));
+        return (IndividualExternalEntity) entity;
     }
 
     public GroupAdditionAll processGroupAddition(GroupAdditionConfig groupJson) {
@@ -103,73 +110,7 @@ public class ExternalEntityService {
     }
 
     private Set<ExternalEntity> getRange(String startCode, String endCode) {
-        // valid range:
-        // 1. code starts OR ends with a letter - ie Dental procedure codes
-        // 2. startCode smaller than endCode
-
-        String codeLetterPrefix = "";
-        String codeLetterPostfix = "";
-
-        int numericStartCode;
-        int numericEndCode;
-        if (Character.isAlphabetic(startCode.charAt(0))) {
-            if (startCode.substring(0, 1).equals(endCode.substring(0, 1))) {
-                codeLetterPrefix = startCode.substring(0, 1);
-                numericStartCode = Integer.parseInt(startCode.substring(1));
-                numericEndCode = Integer.parseInt(endCode.substring(1));
-            } else {
-                throw new IllegalArgumentException(String.format("Invalid range.  Entity range start and end codes do not begin with same letter [%s], [%s]", startCode, endCode));
-            }
-        } else if (Character.isAlphabetic(startCode.charAt(startCode.length() - 1))) {
-            if (startCode.substring(0, startCode.length() - 1).equals(endCode.substring(0, endCode.length() - 1))) {
-                codeLetterPostfix = startCode.substring(startCode.length() - 1);
-                numericStartCode = Integer.parseInt(startCode.substring(0, startCode.length() - 1));
-                numericEndCode = Integer.parseInt(endCode.substring(0, endCode.length() - 1));
-            } else {
-                throw new IllegalArgumentException(String.format("Invalid range.  Entity range start and end codes do not end with same letter [%s], [%s]", startCode, endCode));
-            }
-
-        } else {
-            numericStartCode = Integer.parseInt(startCode);
-            numericEndCode = Integer.parseInt(endCode);
-        }
-
-        if (numericStartCode >= numericEndCode) {
-            throw new IllegalArgumentException(String.format("Invalid range. Entity range start number is not larger than end number [%s], [%s]", startCode, endCode));
-        }
-
-        String finalCodeLetterPrefix = codeLetterPrefix;
-        String finalCodeLetterPostfix = codeLetterPostfix;
-        int finalStartCode = numericStartCode;
-        int finalEndCode = numericEndCode;
-
-        return this.externalEntityRepository.findByType(Type.INDIVIDUAL)
-                .stream()
-                .filter(entity -> isInRange(entity, finalCodeLetterPrefix, finalCodeLetterPostfix, finalStartCode, finalEndCode))
-                .collect(Collectors.toSet());
-
-    }
-
-    private boolean isInRange(ExternalEntity entity, String alphaIdentifierPrefix, String alphaIdentifierPostfix, int startCode, int endCode) {
-        boolean inRange = false;
-        String claimValue = entity.getClaimValue();
-        if (claimValue != null) {
-            String numericClaimValue = "";
-            if (!alphaIdentifierPrefix.isEmpty()) {
-                numericClaimValue = claimValue.substring(1);
-            } else if (!alphaIdentifierPostfix.isEmpty()) {
-                numericClaimValue = claimValue.substring(0, claimValue.length() - 1);
-            }
-            if (StringUtils.isNumeric(numericClaimValue)) {
-                int numericalCode = Integer.parseInt(numericClaimValue);
-                if ((claimValue.substring(0, 1).equals(alphaIdentifierPrefix) || claimValue.substring(claimValue.length() - 1).equals(alphaIdentifierPostfix))
-                        && numericalCode >= startCode
-                        && numericalCode <= endCode) {
-                    inRange = true;
-                }
-            }
-        }
-        return inRange;
+        return this.externalEntityRepository.findByClaimValueInRange(ClaimValueRange.of(startCode, endCode));
     }
 
     private CandidateValue cvFromGroupMember(String entityId) {
@@ -184,61 +125,128 @@ public class ExternalEntityService {
                 .collect(Collectors.toSet());
     }
 
-    private GroupExternalEntity groupFromCSVLine(String[] line) {
-        //{"description","displayName","entityId","members","namespace","tag","typesId"};
-        String description = line[0];
-        String displayName = line[1];
-        String entityId = line[2];
-        String[] entries = line[3].replace("[","").replace("]", ",").split(",");
-        String namespace = line[4];
-        String tag = line[5];
-        String typesId = line[6];
-
-        List<IndividualExternalEntity> individualExternalEntities = new ArrayList<>();
-
-        Arrays.stream(entries).forEach(item -> {
-            if (!item.contains("-")) {
-                IndividualExternalEntity entity = getEntity(namespace, item);
-                if (entity != null) {
-                    individualExternalEntities.add(entity);
-                } else {
-                    throw new IllegalArgumentException(String.format("No IndividualExternalEntity with code %s can be found", item));
-                }
-
-            } else {
-                String[] range = item.split("-");
-                individualExternalEntities.addAll(rangeEntities(range[0], range[1]));
-            }
-        });
+    public Set<GroupExternalEntity> processGroupAdditionCSV(InputStream inputStream) throws Exception {
+        Set<GroupExternalEntity> groups = new HashSet<>();
+        try {
+            processGroupAdditionCSV(inputStream, result -> {
+                // this variant aborts on the first invalid row
+                if (result.hasErrors()) throw new IllegalArgumentException(result.getErrors().get(0));
+                groups.add(result.getGroup());
+            });
+            return groups;
+        } catch (Exception e) {
+            throw new Exception("Error parsing CSV: " + e.getLocalizedMessage());
+        }
+    }
 
+    /**
+     * Creates a group for each row of the csv and passes them to the consumer in the order of the rows. The codes and
+     * the ranges of all the rows are resolved together before the groups are created, so that each claim value is
+     * read once even if it is in several ranges. Rows with unknown codes or invalid ranges are reported with their errors
+     * instead of aborting the whole csv.
+     */
+    public void processGroupAdditionCSV(InputStream inputStream, Consumer<GroupAdditionResult> consumer) {
+        List<GroupRow> rows = readGroupRows(inputStream);
+
+        Set<ClaimValueRange> ranges = rows.stream()
+                .flatMap(row -> row.ranges.stream())
+                .collect(Collectors.toSet());
+        Map<ClaimValueRange, Set<ExternalEntity>> entitiesByRange = this.externalEntityRepository.findByClaimValueInRanges(ranges);
 
-        Set<CandidateValue> members = new HashSet<>();
-        Set<String> surfaceForms = new HashSet<>();
-        individualExternalEntities.forEach(individualExternalEntity -> {
-            members.add(cvFromGroupMember(individualExternalEntity.getEntityId()));
-            surfaceForms.addAll(individualExternalEntity.getSurfaceForms());
-        });
+        for (GroupRow row : rows) {
+            List<IndividualExternalEntity> individualExternalEntities = new ArrayList<>();
+            for (String code : row.singleCodes) {
+                try {
+                    individualExternalEntities.add(getEntity(row.namespace, code));
+                } catch (IllegalArgumentException e) {
+                    row.errors.add(e.getLocalizedMessage());
+                }
+            }
+            for (ClaimValueRange range : row.ranges) {
+                entitiesByRange.get(range).stream()
+                        .filter(entity -> entity.getType().equals(Type.INDIVIDUAL))
+                        .forEach(entity -> individualExternalEntities.add((IndividualExternalEntity) entity));
+            }
 
-        return new GroupExternalEntity(entityId, new HashSet<>(Collections.singletonList(typesId)),
-                displayName, surfaceForms, description, tag,
-                null, members);
+            if (!row.errors.isEmpty()) {
+                consumer.accept(new GroupAdditionResult(row.row, null, row.errors));
+                continue;
+            }
+            Set<CandidateValue> members = new HashSet<>();
+            Set<String> surfaceForms = new HashSet<>();
+            individualExternalEntities.forEach(individualExternalEntity -> {
+                members.add(cvFromGroupMember(individualExternalEntity.getEntityId()));
+                surfaceForms.addAll(individualExternalEntity.getSurfaceForms());
+            });
+            GroupExternalEntity group = new GroupExternalEntity(row.entityId, new HashSet<>(Collections.singletonList(row.typesId)),
+                    row.displayName, surfaceForms, row.description, row.tag,
+                    null, members);
+            consumer.accept(new GroupAdditionResult(row.row, group, Collections.emptyList()));
+        }
     }
 
-
-    public Set<GroupExternalEntity> processGroupAdditionCSV(InputStream inputStream) throws Exception {
-        Set<GroupExternalEntity> groups = new HashSet<>();
+    private List<GroupRow> readGroupRows(InputStream inputStream) {
+        List<GroupRow> rows = new ArrayList<>();
         try (CSVReader csvReader = new CSVReader(new InputStreamReader(inputStream))) {
             String[] line;
             if ((line = csvReader.readNext()) == null || !Arrays.equals(line, GROUP_CSV_HEADERS)) {
                 throw new IllegalArgumentException("CSV file does not have expected headers");
             }
             while ((line = csvReader.readNext()) != null) {
-                groups.add(groupFromCSVLine(line));
+                rows.add(new GroupRow(rows.size() + 1, line));
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (CsvValidationException e) {
+            throw new RuntimeException("A CsvValidationException occurred", e);
+        }
+    }
+
+    private static class GroupRow {
+
+        private final long row;
+        private final List<String> errors = new ArrayList<>();
+        private final List<String> singleCodes = new ArrayList<>();
+        private final List<ClaimValueRange> ranges = new ArrayList<>();
+        private String description;
+        private String displayName;
+        private String entityId;
+        private String namespace;
+        private String tag;
+        private String typesId;
+
+        GroupRow(long row, String[] line) {
+            this.row = row;
+            if (line.length < GROUP_CSV_HEADERS.length) {
+                errors.add(String.format("Expected %d columns, found %d", GROUP_CSV_HEADERS.length, line.length));
+                return;
+            }
+            //{"description","displayName","entityId","members","namespace","tag","typesId"};
+            this.description = line[0];
+            this.displayName = line[1];
+            this.entityId = line[2];
+            this.namespace = line[4];
+            this.tag = line[5];
+            this.typesId = line[6];
+            for (String item : line[3].replace("[", "").replace("]", ",").split(",")) {
+                if (!item.contains("-")) {
+                    singleCodes.add(item);
+                    continue;
+                }
+                String[] range = item.split("-");
+                if (range.length != 2 || range[0].trim().isEmpty() || range[1].trim().isEmpty()) {
+                    errors.add(String.format("Invalid range [%s]", item));
+                    continue;
+                }
+                try {
+                    ranges.add(ClaimValueRange.of(range[0].trim().toUpperCase(), range[1].trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    errors.add(e.getLocalizedMessage());
+                }
             }
-            return groups;
-        } catch (Exception e) {
-            throw new Exception("Error parsing CSV: " + e.getLocalizedMessage());
         }
+
     }
 
 }
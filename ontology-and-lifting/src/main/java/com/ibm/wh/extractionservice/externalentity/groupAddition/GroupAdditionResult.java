@@ -0,0 +1,67 @@
+package com.ibm.wh.extractionservice.externalentity.groupAddition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.ibm.wh.extractionservice.commons.externalentity.type.GroupExternalEntity;
+
+/**
+ * The outcome of a row of a custom groups csv: either the group or the errors that prevented its creation.
+ * Rows are numbered from 1, the header excluded.
+ */
+public class GroupAdditionResult {
+
+    private long row;
+    private GroupExternalEntity group;
+    private List<String> errors = new ArrayList<>();
+
+    @SuppressWarnings("unused")
+    protected GroupAdditionResult() {
+        // required by Jackson!
+    }
+
+    public GroupAdditionResult(long row, GroupExternalEntity group, List<String> errors) {
+        this.row = row;
+        this.group = group;
+        this.errors = errors;
+    }
+
+    public long getRow() {
+        return row;
+    }
+
+    public GroupExternalEntity getGroup() {
+        return group;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        GroupAdditionResult that = (GroupAdditionResult) o;
+        return row == that.row && Objects.equals(group, that.group) && Objects.equals(errors, that.errors);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(row, group, errors);
+    }
+
+    @Override
+    public String toString() {
+        return "GroupAdditionResult{" +
+                "row=" + row +
+                ", group=" + group +
+                ", errors=" + errors +
+                '}';
+    }
+}
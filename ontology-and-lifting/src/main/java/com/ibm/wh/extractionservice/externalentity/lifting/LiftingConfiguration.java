@@ -13,6 +13,7 @@ public class LiftingConfiguration {
 
     private String namespace;
     private Collection<ColumnMapping> columns;
+    private Integer parallelism;
 
     public LiftingConfiguration() {
         // Required by Jackson!
@@ -26,6 +27,11 @@ public class LiftingConfiguration {
         return columns;
     }
 
+    public int getParallelism() {
+        // by default the csv is lifted sequentially
+        return parallelism == null ? 1 : parallelism;
+    }
+
     public static class ColumnMapping {
 
         public enum EntityType {
@@ -0,0 +1,223 @@
+package com.ibm.wh.extractionservice.externalentity.lifting;
+
+import static com.ibm.wh.extractionservice.support.jena.Models.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity;
+import com.ibm.wh.extractionservice.commons.externalentity.type.GroupExternalEntity;
+import com.ibm.wh.extractionservice.commons.externalentity.type.IndividualExternalEntity;
+import com.ibm.wh.extractionservice.externalentity.lifting.LiftingConfiguration.ColumnMapping;
+import com.ibm.wh.extractionservice.externalentity.lifting.LiftingConfiguration.ColumnMapping.EntityType;
+import com.ibm.wh.extractionservice.externalentity.lifting.LiftingConfiguration.CustomPropertyMapping;
+import com.ibm.wh.extractionservice.externalentity.lifting.LiftingConfiguration.PredefinedPropertyMapping;
+import com.ibm.wh.extractionservice.externalentity.lifting.LiftingConfiguration.PredefinedPropertyMapping.PredefinedProperty;
+import com.ibm.wh.extractionservice.externalentity.lifting.LiftingConfiguration.PropertyMapping;
+import com.ibm.wh.extractionservice.externalentity.lifting.LiftingConfiguration.PropertyMapping.Transformation;
+
+/**
+ * A {@link LiftingConfiguration} compiled against the headers of a csv: columns are resolved to their position,
+ * formatters are parsed and case transformations are bound once, so that each row is lifted without any lookup.
+ * Instances are immutable and can be shared among threads.
+ */
+class LiftingPlan {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiftingPlan.class);
+
+    private final List<EntityPlan> entityPlans;
+
+    private LiftingPlan(List<EntityPlan> entityPlans) {
+        this.entityPlans = entityPlans;
+    }
+
+    /**
+     * @param columnHeadersToPosition the position of each column, by column name normalised with {@link #normaliseColumnName(String)}
+     */
+    static LiftingPlan compile(LiftingConfiguration configuration, Map<String, Integer> columnHeadersToPosition) {
+        String namespace = normaliseNamespace(configuration.getNamespace());
+        List<EntityPlan> entityPlans = new ArrayList<>();
+        // each column mapping corresponds to a new entity
+        for (ColumnMapping mapping : configuration.getColumns()) {
+            entityPlans.add(new EntityPlan(mapping, namespace, columnHeadersToPosition));
+        }
+        return new LiftingPlan(Collections.unmodifiableList(entityPlans));
+    }
+
+    static String normaliseColumnName(String column) {
+        return column.toLowerCase().replace('\uFEFF', ' ').trim();
+    }
+
+    private static String normaliseNamespace(String namespace) {
+        // Namespace need to end with `/` or `#`
+        namespace = namespace.trim();
+        if (namespace.endsWith("/") || namespace.endsWith("#")) return namespace;
+        return namespace + "/";
+    }
+
+    void lift(Row row, String entitiesTag, Consumer<ExternalEntity> consumer) {
+        for (EntityPlan entityPlan : entityPlans) {
+            consumer.accept(entityPlan.lift(row, entitiesTag));
+        }
+    }
+
+    interface Row {
+
+        String getValue(int columnIndex);
+
+    }
+
+    private static class EntityPlan {
+
+        private final EntityType entityType;
+        private final String typeUri;
+        private final String individualUriPrefix;
+        private final int idColumnIndex;
+        private final PropertyPlan[] propertyPlans;
+
+        EntityPlan(ColumnMapping mapping, String namespace, Map<String, Integer> columnHeadersToPosition) {
+            this.entityType = mapping.getEntityType();
+            if (entityType != EntityType.GROUP && entityType != EntityType.INDIVIDUAL)
+                throw new IllegalArgumentException(String.format("EntityType value [%s] is not currently supported", entityType));
+            this.typeUri = mapping.getType();
+            this.individualUriPrefix = getIndividualUriPrefix(namespace, typeUri);
+            this.idColumnIndex = findColumnIndex(mapping.getColumn(), columnHeadersToPosition);
+            if (idColumnIndex < 0)
+                throw new IllegalArgumentException(String.format("Error while reading value for column [%s]", mapping.getColumn()));
+            this.propertyPlans = mapping.getProperties().stream()
+                    .map(propertyMapping -> new PropertyPlan(propertyMapping, columnHeadersToPosition))
+                    .toArray(PropertyPlan[]::new);
+        }
+
+        ExternalEntity lift(Row row, String entityTag) {
+            String entityId = generateUriForIndividualWithPrefix(individualUriPrefix, row.getValue(idColumnIndex));
+            Set<String> entityTypeIds = new HashSet<>(1);
+            entityTypeIds.add(typeUri);
+            Set<String> surfaceForms = new HashSet<>();
+            String displayName = null;
+            String description = null;
+            String claimValue = null;
+            for (PropertyPlan propertyPlan : propertyPlans) {
+                switch (propertyPlan.property) {
+                    case DISPLAY_NAME:
+                        displayName = propertyPlan.readValueAsString(row);
+                        break;
+                    case SURFACE_FORM:
+                        surfaceForms.add(propertyPlan.readValueAsString(row));
+                        break;
+                    case DESCRIPTION:
+                        description = propertyPlan.readValueAsString(row);
+                        break;
+                    case CLAIM_VALUE:
+                        claimValue = propertyPlan.readValueAsString(row);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("This should not happen! Predefined property [%s] not found", propertyPlan.property));
+                }
+            }
+            if (entityId.isEmpty()) throw new IllegalStateException("Entity id cannot be empty");
+            if (entityType == EntityType.GROUP)
+                return new GroupExternalEntity(entityId, entityTypeIds, displayName, surfaceForms, description, entityTag, claimValue, Collections.emptySet());
+            return new IndividualExternalEntity(entityId, entityTypeIds, displayName, surfaceForms, description, entityTag, claimValue);
+        }
+
+    }
+
+    private static class PropertyPlan {
+
+        private final PredefinedProperty property;
+        private final int[] columnIndexes;
+        private final Transformation transformation;
+        // the literal text around each `%s` of the formatter, null if the formatter is not a sequence of `%s`
+        private final String[] formatterSegments;
+        private final String formatter;
+
+        PropertyPlan(PropertyMapping propertyMapping, Map<String, Integer> columnHeadersToPosition) {
+            if (propertyMapping instanceof CustomPropertyMapping)
+                throw new UnsupportedOperationException(String.format("Custom properties definitions are currently not supported! Do you want to use any of the predefined properties %s?", Arrays.toString(PredefinedProperty.values())));
+            if (!(propertyMapping instanceof PredefinedPropertyMapping))
+                throw new IllegalArgumentException(String.format("This should not happen! Property mapping type [%s] not supported", propertyMapping.getClass()));
+
+            this.property = ((PredefinedPropertyMapping) propertyMapping).getProperty();
+            // missing columns are skipped, so the remaining values are the arguments of the formatter
+            this.columnIndexes = propertyMapping.getColumns().stream()
+                    .mapToInt(column -> findColumnIndex(column, columnHeadersToPosition))
+                    .filter(index -> index >= 0)
+                    .toArray();
+            this.transformation = propertyMapping.getTransformation() == null ? Transformation.NONE : propertyMapping.getTransformation();
+            this.formatter = propertyMapping.getFormatter();
+            this.formatterSegments = splitFormatter(formatter);
+            if (formatterSegments != null && formatterSegments.length - 1 > columnIndexes.length)
+                throw new IllegalArgumentException(String.format("Formatter [%s] of property [%s] requires %d values, but only %d of the columns %s are available",
+                        formatter, property, formatterSegments.length - 1, columnIndexes.length, propertyMapping.getColumns()));
+        }
+
+        String readValueAsString(Row row) {
+            if (formatterSegments == null)
+                return String.format(formatter, (Object[]) readValues(row));
+            if (formatterSegments.length == 2 && formatterSegments[0].isEmpty() && formatterSegments[1].isEmpty())
+                return transformation.apply(row.getValue(columnIndexes[0]));
+
+            StringBuilder value = new StringBuilder(formatterSegments[0]);
+            for (int i = 1; i < formatterSegments.length; i++) {
+                value.append(transformation.apply(row.getValue(columnIndexes[i - 1]))).append(formatterSegments[i]);
+            }
+            return value.toString();
+        }
+
+        private String[] readValues(Row row) {
+            String[] values = new String[columnIndexes.length];
+            for (int i = 0; i < columnIndexes.length; i++) {
+                values[i] = transformation.apply(row.getValue(columnIndexes[i]));
+            }
+            return values;
+        }
+
+        /**
+         * Splits a formatter made only of literal text, `%s` and `%%` in the text before and after each `%s`.
+         * Returns null for any other formatter, that will be evaluated with {@link String#format(String, Object...)}.
+         */
+        private static String[] splitFormatter(String formatter) {
+            Collection<String> segments = new ArrayList<>();
+            StringBuilder segment = new StringBuilder();
+            for (int i = 0; i < formatter.length(); i++) {
+                char c = formatter.charAt(i);
+                if (c != '%') {
+                    segment.append(c);
+                } else if (i + 1 < formatter.length() && formatter.charAt(i + 1) == '%') {
+                    segment.append('%');
+                    i++;
+                } else if (i + 1 < formatter.length() && formatter.charAt(i + 1) == 's') {
+                    segments.add(segment.toString());
+                    segment.setLength(0);
+                    i++;
+                } else {
+                    return null;
+                }
+            }
+            segments.add(segment.toString());
+            return segments.toArray(new String[0]);
+        }
+
+    }
+
+    private static int findColumnIndex(String column, Map<String, Integer> columnHeadersToPosition) {
+        Integer index = columnHeadersToPosition.get(normaliseColumnName(column));
+        if (index == null) {
+            logger.error("Column with name [{}] not found in {}", normaliseColumnName(column), columnHeadersToPosition.keySet());
+            return -1;
+        }
+        return index;
+    }
+
+}
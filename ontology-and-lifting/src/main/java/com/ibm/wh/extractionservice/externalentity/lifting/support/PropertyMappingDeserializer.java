@@ -20,6 +20,11 @@ import com.ibm.wh.extractionservice.externalentity.lifting.LiftingConfiguration.
 
 public class PropertyMappingDeserializer extends StdDeserializer<PropertyMapping> {
 
+    public PropertyMappingDeserializer() {
+        // Required by Jackson when used in @JsonDeserialize
+        this(PropertyMapping.class);
+    }
+
     public PropertyMappingDeserializer(Class<?> clazz) {
         super(clazz);
     }
@@ -0,0 +1,100 @@
+package com.ibm.wh.extractionservice.externalentity.lifting.support;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * Splits a csv stream in chunks of text that contain only complete records, so that each chunk can be parsed
+ * independently.
+ * <p>
+ * Chunks are cut only at line breaks that are not inside a quoted value. The quoting rules are the ones of the default
+ * opencsv parser, i.e. {@code "} as quote character (doubled to be escaped) and {@code \} as escape character.
+ */
+public class RecordAlignedCsvChunker implements AutoCloseable {
+
+    private static final char QUOTE = '"';
+    private static final char ESCAPE = '\\';
+    private static final char SEPARATOR = ',';
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+
+    // parsing state, see com.opencsv.CSVParser
+    private boolean inQuotes;
+    private boolean inField;
+
+    public RecordAlignedCsvChunker(Reader reader) {
+        this.reader = reader;
+        this.buffer = new char[1 << 16];
+    }
+
+    /**
+     * Returns the next chunk of complete records with at least {@code minLength} characters (unless the end of the
+     * stream is reached first), or null if there is nothing left to read.
+     */
+    public String readChunk(int minLength) {
+        StringBuilder chunk = new StringBuilder(minLength + 1024);
+        while (fillBuffer()) {
+            char c = buffer[position++];
+            chunk.append(c);
+            if (c == '\n' && !inQuotes) {
+                inField = false;
+                if (chunk.length() >= minLength) return chunk.toString();
+            } else {
+                updateState(c, chunk);
+            }
+        }
+        return chunk.length() == 0 ? null : chunk.toString();
+    }
+
+    private void updateState(char c, StringBuilder chunk) {
+        boolean isQuoted = inQuotes || inField;
+        if (c == ESCAPE) {
+            if (isQuoted && isNextCharacter(QUOTE, ESCAPE)) chunk.append(buffer[position++]);
+        } else if (c == QUOTE) {
+            if (isQuoted && isNextCharacter(QUOTE, QUOTE)) chunk.append(buffer[position++]);
+            else inQuotes = !inQuotes;
+            inField = !inField;
+        } else if (c == SEPARATOR && !inQuotes) {
+            inField = false;
+        } else if (c == '\r' && !inQuotes) {
+            inField = false;
+        } else {
+            inField = true;
+        }
+    }
+
+    private boolean isNextCharacter(char one, char other) {
+        if (!fillBuffer()) return false;
+        char next = buffer[position];
+        return next == one || next == other;
+    }
+
+    private boolean fillBuffer() {
+        if (position < limit) return true;
+        try {
+            int read;
+            do {
+                read = reader.read(buffer, 0, buffer.length);
+            } while (read == 0);
+            position = 0;
+            limit = Math.max(read, 0);
+            return read > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
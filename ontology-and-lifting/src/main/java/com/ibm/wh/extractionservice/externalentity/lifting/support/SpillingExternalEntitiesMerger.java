@@ -0,0 +1,229 @@
+package com.ibm.wh.extractionservice.externalentity.lifting.support;
+
+import static java.lang.String.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity;
+import com.ibm.wh.extractionservice.support.NdjsonWriter;
+
+/**
+ * Merges external entities sharing the same entity id, keeping at most a fixed number of entities in memory.
+ * <p>
+ * Entities are buffered sorted by entity id; when the buffer is full it is written to a temporary file (a <i>run</i>).
+ * Runs have a level: every {@value #RUNS_PER_LEVEL} runs of the same level are compacted into a single run of the next
+ * level, so that each entity is rewritten once per level, i.e. a logarithmic number of times, and the runs open at the
+ * same time stay few. {@link #drainTo(Consumer)} performs a k-way merge of all the runs, so that each entity id is
+ * emitted once.
+ * Entities are merged in the order they have been added, i.e. with the same semantics of {@link ExternalEntity#merge}
+ * applied row by row.
+ */
+public class SpillingExternalEntitiesMerger implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpillingExternalEntitiesMerger.class);
+
+    // number of runs of the same level that are compacted into a single run of the next level
+    private static final int RUNS_PER_LEVEL = 16;
+
+    private final ObjectMapper objectMapper;
+    private final int maxEntitiesInMemory;
+    // oldest first, so that levels never increase from a run to the next one
+    private final List<Run> runs;
+    private final TreeMap<String, ExternalEntity> buffer;
+
+    public SpillingExternalEntitiesMerger(ObjectMapper objectMapper, int maxEntitiesInMemory) {
+        if (maxEntitiesInMemory < 1)
+            throw new IllegalArgumentException(format("The number of entities kept in memory must be positive, found [%d]", maxEntitiesInMemory));
+        this.objectMapper = objectMapper;
+        this.maxEntitiesInMemory = maxEntitiesInMemory;
+        this.runs = new ArrayList<>();
+        this.buffer = new TreeMap<>();
+    }
+
+    public void add(ExternalEntity externalEntity) {
+        // entities are merged and sorted by entity id
+        if (externalEntity.getEntityId() == null)
+            throw new IllegalArgumentException(format("Cannot merge the external entity [%s] without entity id", externalEntity.getDisplayName()));
+        buffer.merge(externalEntity.getEntityId(), externalEntity, ExternalEntity::merge);
+        if (buffer.size() >= maxEntitiesInMemory)
+            spill();
+    }
+
+    /**
+     * Emits all the merged entities, sorted by entity id. The merger is empty afterwards.
+     */
+    public void drainTo(Consumer<ExternalEntity> consumer) {
+        if (runs.isEmpty()) {
+            buffer.values().forEach(consumer);
+            buffer.clear();
+            return;
+        }
+        if (!buffer.isEmpty())
+            spill();
+        mergeRuns(runs, consumer);
+    }
+
+    private void spill() {
+        Path run = writeRun(writer -> buffer.values().forEach(writer::write));
+        logger.debug("Spilled {} entities to [{}]", buffer.size(), run);
+        runs.add(new Run(run, 0));
+        buffer.clear();
+        compactRuns();
+    }
+
+    /**
+     * Compacts the newest runs as long as they are {@value #RUNS_PER_LEVEL} of the same level, the same way the digits of
+     * a counter are carried. Only contiguous runs are compacted, so entities are still merged in the order they have
+     * been added.
+     */
+    private void compactRuns() {
+        while (runs.size() >= RUNS_PER_LEVEL) {
+            List<Run> newestRuns = runs.subList(runs.size() - RUNS_PER_LEVEL, runs.size());
+            int level = newestRuns.get(0).level;
+            if (newestRuns.get(RUNS_PER_LEVEL - 1).level != level)
+                return;
+            Path compacted = writeRun(writer -> mergeRuns(newestRuns, writer::write));
+            logger.debug("Compacted {} runs of level {} to [{}]", RUNS_PER_LEVEL, level, compacted);
+            deleteRuns(newestRuns);
+            runs.add(new Run(compacted, level + 1));
+        }
+    }
+
+    private Path writeRun(Consumer<NdjsonWriter> content) {
+        Path run;
+        try {
+            run = Files.createTempFile("lifted-entities-", ".ndjson");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        boolean written = false;
+        try {
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(run));
+                 NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream)) {
+                content.accept(writer);
+            }
+            written = true;
+            return run;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            // the run is not in the runs yet, so it would not be deleted on close
+            if (!written) deleteRun(run);
+        }
+    }
+
+    private void mergeRuns(List<Run> runsToMerge, Consumer<ExternalEntity> consumer) {
+        PriorityQueue<RunCursor> cursors = new PriorityQueue<>(Comparator
+                .comparing((RunCursor cursor) -> cursor.current.getEntityId())
+                .thenComparingInt(cursor -> cursor.runIndex));
+        try {
+            for (int i = 0; i < runsToMerge.size(); i++) {
+                RunCursor cursor = new RunCursor(i, openRun(runsToMerge.get(i).path));
+                if (cursor.advance()) cursors.add(cursor);
+                else cursor.close();
+            }
+            while (!cursors.isEmpty()) {
+                RunCursor cursor = cursors.poll();
+                ExternalEntity merged = cursor.current;
+                reinsertOrClose(cursors, cursor);
+                // runs are sorted, so duplicates of this entity are at the head of the queue, oldest run first
+                while (!cursors.isEmpty() && cursors.peek().current.getEntityId().equals(merged.getEntityId())) {
+                    RunCursor duplicate = cursors.poll();
+                    merged = merged.merge(duplicate.current);
+                    reinsertOrClose(cursors, duplicate);
+                }
+                consumer.accept(merged);
+            }
+        } finally {
+            cursors.forEach(RunCursor::close);
+        }
+    }
+
+    private MappingIterator<ExternalEntity> openRun(Path run) {
+        try {
+            return objectMapper.readerFor(ExternalEntity.class).readValues(new BufferedInputStream(Files.newInputStream(run)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void reinsertOrClose(PriorityQueue<RunCursor> cursors, RunCursor cursor) {
+        if (cursor.advance()) cursors.add(cursor);
+        else cursor.close();
+    }
+
+    @Override
+    public void close() {
+        buffer.clear();
+        deleteRuns(runs);
+    }
+
+    private static void deleteRuns(List<Run> runsToDelete) {
+        for (Run run : runsToDelete) deleteRun(run.path);
+        runsToDelete.clear();
+    }
+
+    private static void deleteRun(Path run) {
+        try {
+            Files.deleteIfExists(run);
+        } catch (IOException e) {
+            logger.warn("Unable to delete temporary file [{}]", run, e);
+        }
+    }
+
+    private static class Run {
+
+        private final Path path;
+        private final int level;
+
+        Run(Path path, int level) {
+            this.path = path;
+            this.level = level;
+        }
+
+    }
+
+    private static class RunCursor {
+
+        private final int runIndex;
+        private final MappingIterator<ExternalEntity> iterator;
+        private ExternalEntity current;
+
+        RunCursor(int runIndex, MappingIterator<ExternalEntity> iterator) {
+            this.runIndex = runIndex;
+            this.iterator = iterator;
+        }
+
+        boolean advance() {
+            current = iterator.hasNext() ? iterator.next() : null;
+            return current != null;
+        }
+
+        void close() {
+            try {
+                iterator.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+}
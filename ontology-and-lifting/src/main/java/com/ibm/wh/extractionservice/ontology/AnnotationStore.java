@@ -0,0 +1,295 @@
+package com.ibm.wh.extractionservice.ontology;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+
+/**
+ * The annotations of the resources of the domain ontology, read once from the model with a scan per annotation
+ * property so that they can be served without querying the inference graph. Instances are immutable: when the
+ * annotations of some resources change, {@link #withAnnotationsReadAgain(Model, Collection)} reads only those resources
+ * again into a new store, that shares the annotations of the other resources with this one.
+ */
+class AnnotationStore {
+
+    private static final Node TRUE = ResourceFactory.createTypedLiteral(true).asNode();
+    // changed resources are folded into the other ones once they are more than this and than 1/8 of them
+    private static final int MIN_CHANGED_RESOURCES_TO_FOLD = 1024;
+
+    private final Map<Kind, Property> properties;
+    private final Map<Node, Annotations> annotations;
+    // resources read again after a change, they take precedence over the annotations above
+    private final Map<Node, Annotations> changedAnnotations;
+
+    private AnnotationStore(Map<Kind, Property> properties, Map<Node, Annotations> annotations, Map<Node, Annotations> changedAnnotations) {
+        this.properties = properties;
+        this.annotations = annotations;
+        this.changedAnnotations = changedAnnotations;
+    }
+
+    Optional<String> getDisplayName(Resource resource) {
+        return Optional.ofNullable(get(resource).displayName);
+    }
+
+    Optional<String> getClaimValue(Resource resource) {
+        return Optional.ofNullable(get(resource).claimValue);
+    }
+
+    Set<String> getLabels(Resource resource) {
+        return get(resource).labels;
+    }
+
+    Set<String> getAffirmativeActions(Resource property) {
+        return get(property).affirmativeActions;
+    }
+
+    Set<String> getNegativeActions(Resource property) {
+        return get(property).negativeActions;
+    }
+
+    Set<String> getExtractionPatterns(Resource ontClass) {
+        return get(ontClass).extractionPatterns;
+    }
+
+    Set<String> getAnnotatedAsValues(Resource resource) {
+        return get(resource).annotatedAsValues;
+    }
+
+    boolean isNegated(Resource property) {
+        return get(property).negated;
+    }
+
+    /**
+     * @return the labels of each resource with a URI and labels
+     */
+    Map<String, Set<String>> getLabelsByUri() {
+        Map<String, Set<String>> labelsByUri = new HashMap<>();
+        annotations.forEach((node, nodeAnnotations) -> {
+            if (!changedAnnotations.containsKey(node)) addLabels(labelsByUri, node, nodeAnnotations);
+        });
+        changedAnnotations.forEach((node, nodeAnnotations) -> addLabels(labelsByUri, node, nodeAnnotations));
+        return labelsByUri;
+    }
+
+    private static void addLabels(Map<String, Set<String>> labelsByUri, Node node, Annotations nodeAnnotations) {
+        if (node.isURI() && !nodeAnnotations.labels.isEmpty()) labelsByUri.put(node.getURI(), nodeAnnotations.labels);
+    }
+
+    private Annotations get(Resource resource) {
+        Node node = resource.asNode();
+        Annotations changed = changedAnnotations.get(node);
+        if (changed != null) return changed;
+        return annotations.getOrDefault(node, Annotations.NONE);
+    }
+
+    /**
+     * @return a store with the annotations of the resources read again from the model, and the ones of the other
+     * resources shared with this store
+     */
+    AnnotationStore withAnnotationsReadAgain(Model model, Collection<? extends Resource> resources) {
+        Map<Node, Annotations> changed = new HashMap<>(changedAnnotations);
+        for (Resource resource : resources)
+            changed.put(resource.asNode(), readAnnotations(model, resource));
+        if (changed.size() <= Math.max(MIN_CHANGED_RESOURCES_TO_FOLD, annotations.size() / 8))
+            return new AnnotationStore(properties, annotations, changed);
+        // so that the changes copied at every update stay few
+        Map<Node, Annotations> folded = new HashMap<>(annotations);
+        changed.forEach((node, nodeAnnotations) -> {
+            if (nodeAnnotations == Annotations.NONE) folded.remove(node);
+            else folded.put(node, nodeAnnotations);
+        });
+        return new AnnotationStore(properties, folded, Collections.emptyMap());
+    }
+
+    private Annotations readAnnotations(Model model, Resource resource) {
+        Annotations.Builder builder = new Annotations.Builder();
+        properties.forEach((kind, property) -> {
+            StmtIterator statements = model.listStatements(resource, property, (RDFNode) null);
+            try {
+                statements.forEachRemaining(statement -> {
+                    if (statement.getObject().isLiteral()) kind.add(builder, statement.getObject().asLiteral());
+                });
+            } finally {
+                statements.close();
+            }
+        });
+        return builder.build();
+    }
+
+    private enum Kind {
+
+        DISPLAY_NAME((builder, value) -> {
+            // same value of Resource.getPropertyValue(property).asLiteral().toString()
+            if (builder.displayName == null) builder.displayName = value.toString();
+        }),
+        CLAIM_VALUE((builder, value) -> {
+            if (builder.claimValue == null) builder.claimValue = value.toString();
+        }),
+        SURFACE_FORM((builder, value) -> builder.labels = addTo(builder.labels, value.getString())),
+        AFFIRMATIVE_ACTION((builder, value) -> builder.affirmativeActions = addTo(builder.affirmativeActions, value.getString())),
+        NEGATIVE_ACTION((builder, value) -> builder.negativeActions = addTo(builder.negativeActions, value.getString())),
+        EXTRACTION_PATTERN((builder, value) -> builder.extractionPatterns = addTo(builder.extractionPatterns, value.getString())),
+        ANNOTATED_AS((builder, value) -> builder.annotatedAsValues = addTo(builder.annotatedAsValues, value.getString())),
+        IS_NEGATED((builder, value) -> builder.negated |= value.asNode().sameValueAs(TRUE));
+
+        private final BiConsumer<Annotations.Builder, Literal> adder;
+
+        Kind(BiConsumer<Annotations.Builder, Literal> adder) {
+            this.adder = adder;
+        }
+
+        void add(Annotations.Builder builder, Literal value) {
+            adder.accept(builder, value);
+        }
+
+        private static Set<String> addTo(Set<String> values, String value) {
+            Set<String> modifiable = values.isEmpty() ? new HashSet<>(2) : values;
+            modifiable.add(value);
+            return modifiable;
+        }
+
+    }
+
+    private static class Annotations {
+
+        private static final Annotations NONE = new Annotations(new Builder());
+
+        private final String displayName;
+        private final String claimValue;
+        private final Set<String> labels;
+        private final Set<String> affirmativeActions;
+        private final Set<String> negativeActions;
+        private final Set<String> extractionPatterns;
+        private final Set<String> annotatedAsValues;
+        private final boolean negated;
+
+        private Annotations(Builder builder) {
+            this.displayName = builder.displayName;
+            this.claimValue = builder.claimValue;
+            this.labels = unmodifiable(builder.labels);
+            this.affirmativeActions = unmodifiable(builder.affirmativeActions);
+            this.negativeActions = unmodifiable(builder.negativeActions);
+            this.extractionPatterns = unmodifiable(builder.extractionPatterns);
+            this.annotatedAsValues = unmodifiable(builder.annotatedAsValues);
+            this.negated = builder.negated;
+        }
+
+        private static Set<String> unmodifiable(Set<String> values) {
+            return values.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(values);
+        }
+
+        private static class Builder {
+
+            private String displayName;
+            private String claimValue;
+            private Set<String> labels = Collections.emptySet();
+            private Set<String> affirmativeActions = Collections.emptySet();
+            private Set<String> negativeActions = Collections.emptySet();
+            private Set<String> extractionPatterns = Collections.emptySet();
+            private Set<String> annotatedAsValues = Collections.emptySet();
+            private boolean negated;
+
+            private boolean isEmpty() {
+                return displayName == null && claimValue == null && labels.isEmpty() && affirmativeActions.isEmpty()
+                        && negativeActions.isEmpty() && extractionPatterns.isEmpty() && annotatedAsValues.isEmpty() && !negated;
+            }
+
+            Annotations build() {
+                return isEmpty() ? NONE : new Annotations(this);
+            }
+
+        }
+
+    }
+
+    static class Builder {
+
+        private final Model model;
+        private final Map<Kind, Property> properties = new EnumMap<>(Kind.class);
+
+        Builder(Model model) {
+            this.model = model;
+        }
+
+        Builder withDisplayNameProperty(Property property) {
+            properties.put(Kind.DISPLAY_NAME, property);
+            return this;
+        }
+
+        Builder withClaimValueProperty(Property property) {
+            properties.put(Kind.CLAIM_VALUE, property);
+            return this;
+        }
+
+        Builder withSurfaceFormProperty(Property property) {
+            properties.put(Kind.SURFACE_FORM, property);
+            return this;
+        }
+
+        Builder withAffirmativeActionProperty(Property property) {
+            properties.put(Kind.AFFIRMATIVE_ACTION, property);
+            return this;
+        }
+
+        Builder withNegativeActionProperty(Property property) {
+            properties.put(Kind.NEGATIVE_ACTION, property);
+            return this;
+        }
+
+        Builder withExtractionPatternProperty(Property property) {
+            properties.put(Kind.EXTRACTION_PATTERN, property);
+            return this;
+        }
+
+        Builder withAnnotatedAsProperty(Property property) {
+            properties.put(Kind.ANNOTATED_AS, property);
+            return this;
+        }
+
+        Builder withIsNegatedProperty(Property property) {
+            properties.put(Kind.IS_NEGATED, property);
+            return this;
+        }
+
+        AnnotationStore build() {
+            // a scan per property, rather than a lookup per resource
+            Map<Node, Annotations.Builder> builders = new HashMap<>();
+            properties.forEach((kind, property) -> {
+                StmtIterator statements = model.listStatements(null, property, (RDFNode) null);
+                try {
+                    while (statements.hasNext()) {
+                        Statement statement = statements.next();
+                        if (statement.getObject().isLiteral())
+                            kind.add(builders.computeIfAbsent(statement.getSubject().asNode(), subject -> new Annotations.Builder()), statement.getObject().asLiteral());
+                    }
+                } finally {
+                    statements.close();
+                }
+            });
+            Map<Node, Annotations> annotations = new HashMap<>();
+            builders.forEach((node, builder) -> {
+                Annotations nodeAnnotations = builder.build();
+                if (nodeAnnotations != Annotations.NONE) annotations.put(node, nodeAnnotations);
+            });
+            return new AnnotationStore(Collections.unmodifiableMap(new EnumMap<>(properties)), annotations, Collections.emptyMap());
+        }
+
+    }
+
+}
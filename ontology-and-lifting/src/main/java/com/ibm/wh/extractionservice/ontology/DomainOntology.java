@@ -4,21 +4,23 @@ import static com.github.jsonldjava.shaded.com.google.common.collect.Sets.*;
 import static java.util.stream.Collectors.*;
 
 import java.util.AbstractMap.SimpleEntry;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Queue;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import com.ibm.wh.extractionservice.support.jena.ModelCache;
 import com.ibm.wh.extractionservice.support.jena.Models;
+import org.apache.jena.enhanced.EnhGraph;
 import org.apache.jena.ext.com.google.common.collect.Streams;
+import org.apache.jena.graph.compose.Delta;
 import org.apache.jena.ontology.DatatypeProperty;
 import org.apache.jena.ontology.Individual;
 import org.apache.jena.ontology.ObjectProperty;
@@ -26,7 +28,11 @@ import org.apache.jena.ontology.OntClass;
 import org.apache.jena.ontology.OntModel;
 import org.apache.jena.ontology.OntProperty;
 import org.apache.jena.ontology.OntResource;
+import org.apache.jena.ontology.impl.OntClassImpl;
+import org.apache.jena.ontology.impl.OntPropertyImpl;
 import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
@@ -70,6 +76,10 @@ public class DomainOntology extends OntModelAdapter {
     // this is needed for WX to work without too many changes, may be removed
     // when refactoring it.
     private final Map<String, DiscoveredExternalEntity> discoveredExternalEntities;
+    // set only for layered clones: the ontology they have been cloned from and the changes made to the clone
+    private final DomainOntology parent;
+    private final Delta delta;
+    private final ModelCache<AnnotationStore> annotationStore = new ModelCache<>(this::isAnnotationStatement, this::isAnnotationValueStatement, this::buildAnnotationStore, this::updateAnnotationStore);
 
     private DomainOntology(Collection<String> ontologyFilePaths,
                            String ontologySyntax,
@@ -87,9 +97,18 @@ public class DomainOntology extends OntModelAdapter {
                            String defaultValuePropertyUri,
                            String hasComplianceRulePropertyUri,
                            String policyClassUri,
-                           List<NormalisationStage> normalisationStages
+                           List<NormalisationStage> normalisationStages,
+                           Optional<DomainOntologySnapshot> snapshot
     ) {
-        super(ontologyFilePaths, ontologySyntax, namespace, RDFS_INFERENCE_ENABLED);
+        super(namespace, RDFS_INFERENCE_ENABLED);
+        // the snapshot already contains external entities and normalisations, and has been validated
+        Optional<Model> snapshotModel = snapshot.flatMap(DomainOntologySnapshot::load);
+        if (snapshotModel.isPresent()) {
+            logger.info("Loading the domain ontology from snapshot [{}]", snapshot.get().getFile());
+            replaceModel(newOwlOntModel(snapshotModel.get(), namespace, RDFS_INFERENCE_ENABLED));
+        } else {
+            readOntologyFiles(ontologyFilePaths, ontologySyntax);
+        }
         this.isNegatedProperty = ResourceFactory.createProperty(isNegatedPropertyUri);
         this.annotatedAsProperty = ResourceFactory.createProperty(annotatedAsPropertyUri);
         this.affirmativeActionProperty = ResourceFactory.createProperty(affirmativeActionPropertyUri);
@@ -109,16 +128,25 @@ public class DomainOntology extends OntModelAdapter {
 
         this.propertiesToBeExtractedPerBenefitRuleSubtype = getAllPropertiesToBeExtracted(parentBenefitRuleClass);
 
-        populateWithExternalEntities(externalEntities);
-        normalise(normalisationStages);
-        validate();
+        if (!snapshotModel.isPresent()) {
+            populateWithExternalEntities(externalEntities);
+            normalise(normalisationStages);
+            validate();
+            snapshot.ifPresent(domainOntologySnapshot -> domainOntologySnapshot.save(this.model.getBaseModel()));
+        }
+        // built once the ontology is complete, instead of at the first extraction
+        annotationStore.get(model);
 
         this.discoveredExternalEntities = new HashMap<>();
+        this.parent = null;
+        this.delta = null;
     }
 
-    // constructor used to create a clone
-    private DomainOntology(OntModel model,
-                           String baseNamespace,
+    // constructor used to create a clone of the source, parent and delta are set only for layered clones
+    private DomainOntology(DomainOntology source,
+                           OntModel model,
+                           DomainOntology parent,
+                           Delta delta,
                            OntClass parentBenefitRuleClass,
                            Map<OntClass, Set<OntProperty>> propertiesToBeExtractedPerBenefitRuleSubtype,
                            Property displayNameProperty,
@@ -132,7 +160,9 @@ public class DomainOntology extends OntModelAdapter {
                            Property extractionPatternProperty,
                            Property defaultValueProperty,
                            Optional<Property> hasComplianceRuleProperty) {
-        super(model, baseNamespace, RDFS_INFERENCE_ENABLED);
+        super(model, source);
+        this.parent = parent;
+        this.delta = delta;
         this.isNegatedProperty = ResourceFactory.createProperty(isNegatedProperty.getURI());
         this.annotatedAsProperty = ResourceFactory.createProperty(annotatedAsProperty.getURI());
         this.affirmativeActionProperty = ResourceFactory.createProperty(affirmativeActionProperty.getURI());
@@ -153,6 +183,13 @@ public class DomainOntology extends OntModelAdapter {
         // using this helper method to avoid recomputing the map
         this.propertiesToBeExtractedPerBenefitRuleSubtype = cloneMapAndRefreshOntResources(propertiesToBeExtractedPerBenefitRuleSubtype);
         this.discoveredExternalEntities = new HashMap<>();
+        if (isLayeredClone()) initializeModelCachesFromParent();
+    }
+
+    // until the delta changes a layered clone has the same statements of its parent, and so the same indexes
+    private void initializeModelCachesFromParent() {
+        initializeModelCaches(parent);
+        annotationStore.initialize(model, parent.getAnnotationStore());
     }
 
     private Map<OntClass, Set<OntProperty>> cloneMapAndRefreshOntResources(Map<OntClass, Set<OntProperty>> toBeCloned) {
@@ -164,12 +201,16 @@ public class DomainOntology extends OntModelAdapter {
     private Set<OntProperty> refreshPropertiesSet(Set<OntProperty> properties) {
         // assumption: resources exist in the current model
         return properties.stream()
-                .map(property -> getPropertyByUri(property.getURI()).get())
+                .map(property -> isLayeredClone()
+                        ? new OntPropertyImpl(property.asNode(), (EnhGraph) model)
+                        : getPropertyByUri(property.getURI()).get())
                 .collect(Collectors.toSet());
     }
 
     private OntClass refreshClass(OntClass ontClass) {
         // assumption: resources exist in the current model
+        // a layered clone has all the statements of its parent, so the checks done by the parent are not repeated
+        if (isLayeredClone()) return new OntClassImpl(ontClass.asNode(), (EnhGraph) model);
         return getClassByUri(ontClass.getURI()).get();
     }
 
@@ -278,34 +319,23 @@ public class DomainOntology extends OntModelAdapter {
     }
 
     public boolean isNegated(OntProperty property) {
-        // retrieve the corresponding property in this model
-        Property modelProperty = getOntModel().getProperty(property.getURI());
-        Literal trueLiteral = getOntModel().createTypedLiteral(true);
-        return modelProperty.hasProperty(isNegatedProperty, trueLiteral);
+        return getAnnotationStore().isNegated(property);
     }
 
     public Collection<String> getAffirmativeActions(OntProperty property) {
-        return getOntPropertyByUri(property.getURI())
-                .map(modelProperty -> getStringPropertyValues(modelProperty, affirmativeActionProperty))
-                .orElse(Sets.newHashSet());
+        return getAnnotationStore().getAffirmativeActions(property);
     }
 
     public Collection<String> getNegativeActions(OntProperty property) {
-        return getOntPropertyByUri(property.getURI())
-                .map(modelProperty -> getStringPropertyValues(modelProperty, negativeActionProperty))
-                .orElse(Sets.newHashSet());
+        return getAnnotationStore().getNegativeActions(property);
     }
 
     public Collection<String> getExtractionPatterns(OntClass ontClass) {
-        return getOntResourceInThisModel(ontClass)
-                .map(resourceInModel -> getStringPropertyValues(resourceInModel, extractionPatternProperty))
-                .orElse(Sets.newHashSet());
+        return getAnnotationStore().getExtractionPatterns(ontClass);
     }
 
     public Collection<String> getAnnotatedAsValues(OntResource resource) {
-        return getOntResourceInThisModel(resource)
-                .map(resourceInModel -> getStringPropertyValues(resourceInModel, annotatedAsProperty))
-                .orElse(Sets.newHashSet());
+        return getAnnotationStore().getAnnotatedAsValues(resource);
     }
 
     public Map<String, Set<Resource>> getAllResourcesPerAnnotatedAsValue() {
@@ -325,6 +355,10 @@ public class DomainOntology extends OntModelAdapter {
         return policyClass;
     }
 
+    public OntClass getParentBenefitRuleClass() {
+        return parentBenefitRuleClass;
+    }
+
     public boolean isBenefitRuleClass(OntClass ontClass) {
         return getBenefitRuleClasses().contains(ontClass);
     }
@@ -353,24 +387,7 @@ public class DomainOntology extends OntModelAdapter {
      * Gets all properties in the sub-graph rooted in ontClass by exploiting the domain-range relations as edges
      */
     public Set<OntProperty> getAllPropertiesConnectedWithClass(OntClass ontClass) {
-        Queue<OntClass> open = new LinkedList<>();
-        open.add(ontClass);
-        Set<OntClass> visited = new HashSet<>();
-        Set<OntProperty> properties = new HashSet<>();
-        while (!open.isEmpty()) {
-            OntClass currentDomain = open.poll();
-            visited.add(currentDomain);
-            Collection<OntProperty> propertiesWithDomain = getPropertiesWithDomain(currentDomain, false);
-            Set<OntClass> newRanges = propertiesWithDomain.stream()
-                    .map(property -> getSingleRangeClass(property, true))
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .filter(rangeClass -> !visited.contains(rangeClass))
-                    .collect(Collectors.toSet());
-            properties.addAll(propertiesWithDomain);
-            open.addAll(newRanges);
-        }
-        return properties;
+        return new HashSet<>(getSchemaIndex().getPropertiesConnectedWithClass(ontClass));
     }
 
     public Set<OntProperty>  getCompatiblePropertyWithRange(OntClass ontClass) {
@@ -407,24 +424,61 @@ public class DomainOntology extends OntModelAdapter {
      * Gets all classes in the sub-graph rooted in ontClass by exploiting the domain-range relations as edges
      */
     public Set<OntClass> getAllClassesConnectedWithClass(OntClass ontClass) {
-        Queue<OntClass> open = new LinkedList<>();
-        open.add(ontClass);
-        Set<OntClass> visited = new HashSet<>();
-        Set<OntClass> classes = new HashSet<>();
-        while (!open.isEmpty()) {
-            OntClass currentDomain = open.poll();
-            classes.add(currentDomain);
-            visited.add(currentDomain);
-            Collection<OntProperty> propertiesWithDomain = getPropertiesWithDomain(currentDomain, false);
-            Set<OntClass> newRanges = propertiesWithDomain.stream()
-                    .map(property -> getSingleRangeClass(property, true))
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .filter(rangeClass -> !visited.contains(rangeClass))
-                    .collect(Collectors.toSet());
-            open.addAll(newRanges);
-        }
-        return classes;
+        return new HashSet<>(getSchemaIndex().getClassesConnectedWithClass(ontClass));
+    }
+
+    /**
+     * Gets the annotations of the resources of this ontology, reading again from the model the resources whose
+     * annotations changed since the last call. Collections returned by the store cannot be modified.
+     */
+    private AnnotationStore getAnnotationStore() {
+        return annotationStore.get(model);
+    }
+
+    private AnnotationStore buildAnnotationStore(OntModel model) {
+        return new AnnotationStore.Builder(model)
+                .withDisplayNameProperty(displayNameProperty)
+                .withClaimValueProperty(claimValueProperty)
+                .withSurfaceFormProperty(surfaceFormProperty)
+                .withAffirmativeActionProperty(affirmativeActionProperty)
+                .withNegativeActionProperty(negativeActionProperty)
+                .withExtractionPatternProperty(extractionPatternProperty)
+                .withAnnotatedAsProperty(annotatedAsProperty)
+                .withIsNegatedProperty(isNegatedProperty)
+                .build();
+    }
+
+    // only the annotations of the subject of the statement may change
+    private AnnotationStore updateAnnotationStore(OntModel model, AnnotationStore store, List<Statement> changes) {
+        return store.withAnnotationsReadAgain(model, changes.stream().map(Statement::getSubject).collect(Collectors.toSet()));
+    }
+
+    /**
+     * Whether adding or removing the statement may change the annotations of the resources, e.g. display names
+     */
+    public boolean isAnnotationStatement(Statement statement) {
+        Property predicate = statement.getPredicate();
+        return predicate.equals(displayNameProperty)
+                || predicate.equals(claimValueProperty)
+                || predicate.equals(surfaceFormProperty)
+                || predicate.equals(affirmativeActionProperty)
+                || predicate.equals(negativeActionProperty)
+                || predicate.equals(extractionPatternProperty)
+                || predicate.equals(annotatedAsProperty)
+                || predicate.equals(isNegatedProperty)
+                // sub-properties of the annotation properties change the inferred annotations
+                || predicate.equals(RDFS.subPropertyOf);
+    }
+
+    // a value of an annotation property, rather than a sub-property that may change the annotations of any resource
+    private boolean isAnnotationValueStatement(Statement statement) {
+        return !statement.getPredicate().equals(RDFS.subPropertyOf);
+    }
+
+    @Override
+    protected void invalidateModelCaches() {
+        super.invalidateModelCaches();
+        annotationStore.invalidate();
     }
 
     public Set<OntClass> getBenefitRuleClasses() {
@@ -432,15 +486,11 @@ public class DomainOntology extends OntModelAdapter {
     }
 
     public Optional<String> getDisplayName(Resource resource) {
-        return getOntResourceInThisModel(resource)
-                .map(thisResource -> thisResource.getPropertyValue(displayNameProperty))
-                .map(label -> label.asLiteral().toString());
+        return getAnnotationStore().getDisplayName(resource);
     }
 
     public String getClaimValue(Resource resource) {
-        return getOntResourceInThisModel(resource)
-                .map(thisResource -> thisResource.getPropertyValue(claimValueProperty))
-                .map(label -> label.asLiteral().toString()).orElse(null);
+        return getAnnotationStore().getClaimValue(resource).orElse(null);
     }
 
     // ---------------
@@ -448,9 +498,17 @@ public class DomainOntology extends OntModelAdapter {
     // ---------------
 
     public Collection<String> getLabels(OntResource resource) {
-        return getOntResourceInThisModel(resource)
-                .map(modelResource -> getStringPropertyValues(modelResource, surfaceFormProperty))
-                .orElse(Sets.newHashSet());
+        return getAnnotationStore().getLabels(resource);
+    }
+
+    /**
+     * Gets the surface forms of all the resources with a URI from the annotations of the model, e.g. to compile them
+     * in a model cache, without querying it. Sets in the map cannot be modified.
+     *
+     * @param model the model of this ontology
+     */
+    public Map<String, Set<String>> getSurfaceFormsByUri(OntModel model) {
+        return annotationStore.get(model).getLabelsByUri();
     }
 
     public Set<OntResource> findAllResourcesWithLabel(String label) {
@@ -575,9 +633,67 @@ public class DomainOntology extends OntModelAdapter {
         return CollectionsUtils.optionalAny(ranges);
     }
 
+    /**
+     * Creates a clone that copies all the statements of this ontology in a new model.
+     */
     public DomainOntology createClone() {
-        return new DomainOntology(model,
-                namespace,
+        return createClone(cloneOntModel(), null, null);
+    }
+
+    /**
+     * Creates a clone that reads the statements of this ontology, inferred ones included, and keeps its own changes
+     * in a separate delta, so that it is created in constant time regardless of the size of the ontology. The clone
+     * starts with the indexes and the annotations of this ontology, computed again only after changes to the clone.
+     * <p>
+     * Statements added to the clone are not used for inference. Changes to this ontology are visible in the clone,
+     * so this ontology should not be changed while the clone is in use, and the clone can be read concurrently only
+     * if this ontology can. Changes to the clone can be applied to this ontology with {@link #commit()}, or dropped
+     * with {@link #discard()}.
+     */
+    public DomainOntology createLayeredClone() {
+        Delta delta = new Delta(model.getGraph());
+        OntModel layeredModel = newOwlOntModel(ModelFactory.createModelForGraph(delta), namespace, false);
+        layeredModel.setNsPrefixes(model.getNsPrefixMap());
+        return createClone(layeredModel, this, delta);
+    }
+
+    /**
+     * Applies the changes made to this layered clone to the ontology it has been cloned from, then clears them.
+     * Removals of inferred statements have no effect on the ontology it has been cloned from.
+     */
+    public void commit() {
+        requireLayeredClone();
+        parent.getOntModel().remove(ModelFactory.createModelForGraph(delta.getDeletions()));
+        parent.getOntModel().add(ModelFactory.createModelForGraph(delta.getAdditions()));
+        discard();
+    }
+
+    /**
+     * Drops the changes made to this layered clone, which will then have the same statements of the ontology it has
+     * been cloned from.
+     */
+    public void discard() {
+        requireLayeredClone();
+        delta.getAdditions().clear();
+        delta.getDeletions().clear();
+        // the delta is cleared bypassing the model, so its listeners are not notified
+        initializeModelCachesFromParent();
+    }
+
+    public boolean isLayeredClone() {
+        return delta != null;
+    }
+
+    private void requireLayeredClone() {
+        if (!isLayeredClone())
+            throw new IllegalStateException("Only layered clones can be committed or discarded, see createLayeredClone()");
+    }
+
+    private DomainOntology createClone(OntModel model, DomainOntology parent, Delta delta) {
+        return new DomainOntology(this,
+                model,
+                parent,
+                delta,
                 parentBenefitRuleClass,
                 propertiesToBeExtractedPerBenefitRuleSubtype,
                 displayNameProperty,
@@ -593,6 +709,14 @@ public class DomainOntology extends OntModelAdapter {
                 hasComplianceRuleProperty);
     }
 
+    public Property getDisplayNameProperty() {
+        return displayNameProperty;
+    }
+
+    public Property getSurfaceFormProperty() {
+        return surfaceFormProperty;
+    }
+
     public Map<OntResource, Set<String>> getAllSurfaceForms() {
         return getAllAnnotationsFor(surfaceFormProperty);
     }
@@ -637,6 +761,7 @@ public class DomainOntology extends OntModelAdapter {
         private String parentBenefitRuleClassUri;
         private String policyClassUri;
         private String surfaceFormPropertyUri;
+        private String snapshotDirectory;
 
         public Builder(
                 Collection<String> ontologyFilePaths,
@@ -721,6 +846,16 @@ public class DomainOntology extends OntModelAdapter {
             return this;
         }
 
+        /**
+         * Enables the snapshot of the built domain ontology in the given directory: when none of the inputs has changed,
+         * the domain ontology is loaded from the snapshot, skipping external entities population, normalisation and
+         * validation. Disabled if null or empty.
+         */
+        public Builder withSnapshotDirectory(String snapshotDirectory) {
+            this.snapshotDirectory = snapshotDirectory;
+            return this;
+        }
+
         public DomainOntology build() {
 
             notNullOrThrowException("affirmativeActionPropertyUri", affirmativeActionPropertyUri);
@@ -753,11 +888,32 @@ public class DomainOntology extends OntModelAdapter {
                     defaultValuePropertyUri,
                     hasComplianceRulePropertyUri,
                     policyClassUri,
-                    normalisationStages
+                    normalisationStages,
+                    getSnapshot()
             );
 
         }
 
+        private Optional<DomainOntologySnapshot> getSnapshot() {
+            if (snapshotDirectory == null || snapshotDirectory.trim().isEmpty()) return Optional.empty();
+            List<String> settings = Arrays.asList(
+                    ontologySyntax,
+                    namespace,
+                    affirmativeActionPropertyUri,
+                    annotatedAsPropertyUri,
+                    defaultValuePropertyUri,
+                    hasComplianceRulePropertyUri,
+                    displayNamePropertyUri,
+                    claimValuePropertyUri,
+                    extractionPatternPropertyUri,
+                    isNegatedPropertyUri,
+                    negativeActionPropertyUri,
+                    parentBenefitRuleClassUri,
+                    policyClassUri,
+                    surfaceFormPropertyUri);
+            return Optional.of(DomainOntologySnapshot.of(snapshotDirectory.trim(), ontologyFilePaths, settings, externalEntities, normalisationStages));
+        }
+
         private static void notNullOrThrowException(String propertyName, String propertyUri) {
             if (propertyUri == null) {
                 throw new IllegalStateException(String.format("Property [%s] is required.", propertyName));
@@ -0,0 +1,181 @@
+package com.ibm.wh.extractionservice.ontology;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.ibm.wh.extractionservice.commons.externalentity.ExternalEntity;
+import com.ibm.wh.extractionservice.commons.externalentity.type.GroupExternalEntity;
+import com.ibm.wh.extractionservice.ontology.normalisation.NormalisationStage;
+
+/**
+ * A snapshot of the asserted statements of a {@link DomainOntology}, after external entities have been added and
+ * normalisation stages applied, stored in RDF Thrift format.
+ * <p>
+ * Snapshots are identified by the SHA-256 of all the inputs of the domain ontology (ontology files, settings,
+ * external entities and normalisation stages with their settings), so a snapshot is used only if none of them has
+ * changed.
+ */
+class DomainOntologySnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(DomainOntologySnapshot.class);
+
+    // to be increased whenever the way the domain ontology is built changes
+    private static final int FORMAT_VERSION = 2;
+    private static final String FILE_PREFIX = "domain-ontology-";
+    private static final String FILE_EXTENSION = ".trdf";
+
+    private final Path directory;
+    private final Path file;
+
+    private DomainOntologySnapshot(Path directory, String inputsHash) {
+        this.directory = directory;
+        this.file = directory.resolve(FILE_PREFIX + inputsHash + FILE_EXTENSION);
+    }
+
+    /**
+     * @param settings the settings that affect the content of the domain ontology, such as namespace and property uris
+     */
+    static DomainOntologySnapshot of(String directory,
+                                     Collection<String> ontologyFilePaths,
+                                     List<String> settings,
+                                     Collection<ExternalEntity> externalEntities,
+                                     List<NormalisationStage> normalisationStages) {
+        Hasher hasher = Hashing.sha256().newHasher().putInt(FORMAT_VERSION);
+        // ontology files are read in any order, the resulting model does not depend on it
+        for (String ontologyFilePath : ontologyFilePaths.stream().sorted().collect(Collectors.toList())) {
+            try {
+                hasher.putString(ontologyFilePath, UTF_8).putBytes(Files.readAllBytes(Paths.get(ontologyFilePath)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format("Unable to read ontology file [%s]", ontologyFilePath), e);
+            }
+        }
+        settings.forEach(setting -> putNullableString(hasher, setting));
+        externalEntities.stream()
+                .sorted(Comparator.comparing(ExternalEntity::getEntityId, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .forEach(externalEntity -> putExternalEntity(hasher, externalEntity));
+        for (NormalisationStage normalisationStage : normalisationStages) {
+            List<String> cacheKey = normalisationStage.cacheKey();
+            hasher.putInt(cacheKey.size());
+            cacheKey.forEach(value -> putNullableString(hasher, value));
+        }
+        return new DomainOntologySnapshot(Paths.get(directory), hasher.hash().toString());
+    }
+
+    private static void putExternalEntity(Hasher hasher, ExternalEntity externalEntity) {
+        // sets are sorted, so that the hash does not depend on their iteration order
+        putNullableString(hasher, Objects.toString(externalEntity.getType(), null));
+        putNullableString(hasher, externalEntity.getEntityId());
+        putNullableString(hasher, externalEntity.getDisplayName());
+        putNullableString(hasher, externalEntity.getDescription());
+        putNullableString(hasher, externalEntity.getTag());
+        putNullableString(hasher, externalEntity.getClaimValue());
+        putSortedStrings(hasher, externalEntity.getEntityTypeIds());
+        putSortedStrings(hasher, externalEntity.getSurfaceForms());
+        if (externalEntity instanceof GroupExternalEntity)
+            putSortedStrings(hasher, ((GroupExternalEntity) externalEntity).getMembers().stream().map(Objects::toString).collect(Collectors.toSet()));
+    }
+
+    private static void putSortedStrings(Hasher hasher, Set<String> values) {
+        if (values == null) {
+            hasher.putInt(-1);
+            return;
+        }
+        hasher.putInt(values.size());
+        values.stream().sorted(Comparator.nullsFirst(Comparator.naturalOrder())).forEach(value -> putNullableString(hasher, value));
+    }
+
+    private static void putNullableString(Hasher hasher, String value) {
+        // the length prefix keeps adjacent values apart
+        if (value == null) hasher.putInt(-1);
+        else hasher.putInt(value.length()).putString(value, UTF_8);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the asserted statements of the snapshot, if it exists and is readable.
+     */
+    Optional<Model> load() {
+        if (!Files.isRegularFile(file)) return Optional.empty();
+        Model model = ModelFactory.createDefaultModel();
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file))) {
+            RDFDataMgr.read(model, inputStream, Lang.RDFTHRIFT);
+            return Optional.of(model);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unable to read the domain ontology snapshot [{}], the domain ontology will be built from its inputs", file, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the model, replacing any other snapshot in the directory. Failures are logged, since the snapshot is only
+     * an optimisation.
+     */
+    void save(Model model) {
+        Path temporaryFile = null;
+        try {
+            Files.createDirectories(directory);
+            // written aside and then moved, so that a partially written snapshot is never loaded
+            temporaryFile = Files.createTempFile(directory, FILE_PREFIX, ".tmp");
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(temporaryFile))) {
+                RDFDataMgr.write(outputStream, model, Lang.RDFTHRIFT);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Domain ontology snapshot saved to [{}]", file);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unable to save the domain ontology snapshot [{}]", file, e);
+            deleteQuietly(temporaryFile);
+            return;
+        }
+        deleteOtherSnapshots();
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Unable to delete temporary file [{}]", path, e);
+        }
+    }
+
+    private void deleteOtherSnapshots() {
+        try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_EXTENSION)) {
+            for (Path snapshot : snapshots) {
+                if (!snapshot.equals(file)) Files.deleteIfExists(snapshot);
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to delete outdated domain ontology snapshots in [{}]", directory, e);
+        }
+    }
+
+}
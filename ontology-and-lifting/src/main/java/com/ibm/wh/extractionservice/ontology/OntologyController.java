@@ -1,12 +1,18 @@
 package com.ibm.wh.extractionservice.ontology;
 
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import com.ibm.wh.extractionservice.ontology.search.OntologySearchResult;
+
 @RestController
 public class OntologyController {
 
     public static final String ENDPOINT__GET_ONTOLOGY = "/ontology";
+    public static final String ENDPOINT__SEARCH_ONTOLOGY = "/ontology/search";
+    public static final String ENDPOINT__FUZZY_SEARCH_ONTOLOGY = "/ontology/search/fuzzy";
 
     private final OntologyService ontologyService;
 
@@ -20,4 +26,22 @@ public class OntologyController {
         return ontologyService.getOntology().toString(outputSyntax);
     }
 
+    @GetMapping(path = ENDPOINT__SEARCH_ONTOLOGY)
+    public List<OntologySearchResult> search(
+            @RequestParam(value = "query") String query,
+            @RequestParam(value = "max", defaultValue = "10") int maxNumberOfResults,
+            @RequestParam(value = "filtered", defaultValue = "false") boolean filtered
+    ) {
+        return ontologyService.search(query, maxNumberOfResults, filtered);
+    }
+
+    @GetMapping(path = ENDPOINT__FUZZY_SEARCH_ONTOLOGY)
+    public List<OntologySearchResult> fuzzySearch(
+            @RequestParam(value = "query") String query,
+            @RequestParam(value = "max", defaultValue = "10") int maxNumberOfResults,
+            @RequestParam(value = "filtered", defaultValue = "false") boolean filtered
+    ) {
+        return ontologyService.fuzzySearch(query, maxNumberOfResults, filtered);
+    }
+
 }
@@ -1,23 +1,58 @@
 package com.ibm.wh.extractionservice.ontology;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import com.ibm.wh.extractionservice.ontology.search.FuzzyOntologySearch;
+import com.ibm.wh.extractionservice.ontology.search.OntologyIndexSearch;
+import com.ibm.wh.extractionservice.ontology.search.OntologySearchResult;
+import com.ibm.wh.extractionservice.ontology.search.filter.OntologySearchResultsFilter;
+
 @Service
 public class OntologyService {
 
     private final DomainOntology domainOntology;
+    private final OntologyIndexSearch ontologyIndexSearch;
+    private final FuzzyOntologySearch fuzzyOntologySearch;
+    private final OntologySearchResultsFilter ontologySearchResultsFilter;
     private static final Logger logger = LoggerFactory.getLogger(OntologyService.class);
 
     @Autowired
-    public OntologyService(DomainOntology domainOntology) {
+    public OntologyService(
+            DomainOntology domainOntology,
+            OntologyIndexSearch ontologyIndexSearch,
+            FuzzyOntologySearch fuzzyOntologySearch,
+            @Qualifier("maxDecreaseOntologySearchResultsFilterStrategy") OntologySearchResultsFilter ontologySearchResultsFilter
+    ) {
         this.domainOntology = domainOntology;
+        this.ontologyIndexSearch = ontologyIndexSearch;
+        this.fuzzyOntologySearch = fuzzyOntologySearch;
+        this.ontologySearchResultsFilter = ontologySearchResultsFilter;
     }
 
     public DomainOntology getOntology() {
         return domainOntology;
     }
 
+    /**
+     * @param filtered whether to drop the results after the first big decrease of the score
+     */
+    public List<OntologySearchResult> search(String query, int maxNumberOfResults, boolean filtered) {
+        List<OntologySearchResult> results = ontologyIndexSearch.search(query, maxNumberOfResults);
+        return filtered ? ontologySearchResultsFilter.filter(results) : results;
+    }
+
+    /**
+     * Same as {@link #search(String, int, boolean)}, matching the query approximately against whole surface forms
+     */
+    public List<OntologySearchResult> fuzzySearch(String query, int maxNumberOfResults, boolean filtered) {
+        List<OntologySearchResult> results = fuzzyOntologySearch.search(query, maxNumberOfResults);
+        return filtered ? ontologySearchResultsFilter.filter(results) : results;
+    }
+
 }
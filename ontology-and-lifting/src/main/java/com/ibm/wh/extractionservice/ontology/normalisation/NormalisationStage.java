@@ -1,5 +1,7 @@
 package com.ibm.wh.extractionservice.ontology.normalisation;
 
+import java.util.List;
+
 import org.apache.jena.ontology.OntModel;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.Resource;
@@ -9,6 +11,12 @@ public interface NormalisationStage {
 
     void apply(OntModel ontModel);
 
+    /**
+     * @return the class of the stage and all the settings that affect its output, so that a snapshot of the domain
+     * ontology is not used once they change
+     */
+    List<String> cacheKey();
+
     static void applyUpdate(Statement statement, String newObject, UpdateMode updateMode) {
         if (statement.getObject().toString().equals(newObject)) return;
         switch (updateMode) {
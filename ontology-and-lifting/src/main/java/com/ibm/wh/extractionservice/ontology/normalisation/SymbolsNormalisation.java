@@ -1,5 +1,8 @@
 package com.ibm.wh.extractionservice.ontology.normalisation;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.jena.ontology.OntModel;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
@@ -21,6 +24,11 @@ public class SymbolsNormalisation implements NormalisationStage {
                 .forEach(statement -> NormalisationStage.applyUpdate(statement, normalise(statement.getObject().toString()), updateMode));
     }
 
+    @Override
+    public List<String> cacheKey() {
+        return Arrays.asList(getClass().getName(), datatypeProperty.getURI(), updateMode.name());
+    }
+
     private String normalise(String string) {
         return string
                 .replace(" / ", "/")
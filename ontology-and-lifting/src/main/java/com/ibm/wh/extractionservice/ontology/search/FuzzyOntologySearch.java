@@ -0,0 +1,73 @@
+package com.ibm.wh.extractionservice.ontology.search;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.jena.ontology.OntModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.ibm.wh.extractionservice.ontology.DomainOntology;
+import com.ibm.wh.extractionservice.support.jena.ModelCache;
+
+/**
+ * Approximate search of the resources of the domain ontology by surface form, see {@link FuzzySurfaceFormIndex}.
+ * The index is built at the start and built again after surface forms are added to or removed from the ontology.
+ */
+@Service
+public class FuzzyOntologySearch {
+
+    private static final Logger logger = LoggerFactory.getLogger(FuzzyOntologySearch.class);
+
+    private final DomainOntology domainOntology;
+    private final double minScore;
+    private final ModelCache<FuzzySurfaceFormIndex> index;
+
+    @Autowired
+    public FuzzyOntologySearch(
+            DomainOntology domainOntology,
+            @Value("${ontology.search.fuzzy.min-score:0.5}") double minScore
+    ) {
+        if (minScore < 0 || minScore > 1)
+            throw new IllegalArgumentException(String.format("[%f] is an invalid score, the score must be a value between 0 and 1", minScore));
+        this.domainOntology = domainOntology;
+        this.minScore = minScore;
+        this.index = new ModelCache<>(
+                statement -> statement.getPredicate().equals(domainOntology.getSurfaceFormProperty()),
+                this::buildIndex);
+        getIndex();
+    }
+
+    /**
+     * @return at most maxNumberOfResults resources, scored between `ontology.search.fuzzy.min-score` and 1, sorted by
+     * decreasing score
+     */
+    public List<OntologySearchResult> search(String query, int maxNumberOfResults) {
+        if (query == null || query.trim().isEmpty())
+            throw new IllegalArgumentException("The query cannot be empty");
+        return getIndex().search(query, maxNumberOfResults, minScore);
+    }
+
+    @PreDestroy
+    public void close() {
+        index.close();
+    }
+
+    private FuzzySurfaceFormIndex getIndex() {
+        return index.get(domainOntology.getOntModel());
+    }
+
+    private FuzzySurfaceFormIndex buildIndex(OntModel model) {
+        Map<String, Set<String>> surfaceFormsByUri = domainOntology.getSurfaceFormsByUri(model);
+        FuzzySurfaceFormIndex fuzzyIndex = FuzzySurfaceFormIndex.build(surfaceFormsByUri);
+        logger.info("Indexed {} distinct surface forms of {} resources for the fuzzy ontology search", fuzzyIndex.getNumberOfSurfaceForms(), surfaceFormsByUri.size());
+        return fuzzyIndex;
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.ibm.wh.extractionservice.ontology.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Approximate lookup of surface forms, tolerant to truncated words ("eval" for "evaluation"), to the order of the
+ * words and to punctuation ("x - ray" for "x-ray").
+ * <p>
+ * Surface forms are split in words made of letters and digits, and each word in its character trigrams, the first one
+ * marked as the beginning of a word. A query is scored against each surface form with the Dice coefficient of their
+ * sets of trigrams, counted through an inverted index from trigrams to surface forms built once, so that only the
+ * surface forms sharing at least a trigram with the query are scored. Instances are immutable and can be shared among
+ * threads.
+ */
+public final class FuzzySurfaceFormIndex {
+
+    private static final char WORD_BEGIN = '$';
+    private static final int GRAM_LENGTH = 3;
+    private static final int[] NO_FORMS = new int[0];
+
+    private final Map<String, int[]> formsByGram;
+    private final int[] numberOfGramsByForm;
+    private final String[][] urisByForm;
+
+    private FuzzySurfaceFormIndex(Map<String, int[]> formsByGram, int[] numberOfGramsByForm, String[][] urisByForm) {
+        this.formsByGram = formsByGram;
+        this.numberOfGramsByForm = numberOfGramsByForm;
+        this.urisByForm = urisByForm;
+    }
+
+    /**
+     * @param surfaceFormsByUri the surface forms of each resource, by resource URI
+     */
+    public static FuzzySurfaceFormIndex build(Map<String, ? extends Collection<String>> surfaceFormsByUri) {
+        // surface forms equal once normalised are indexed once, with all their resources
+        Map<String, Set<String>> urisByNormalisedForm = new LinkedHashMap<>();
+        surfaceFormsByUri.forEach((uri, surfaceForms) -> surfaceForms.forEach(surfaceForm -> {
+            String normalisedForm = normalise(surfaceForm);
+            if (!normalisedForm.isEmpty()) urisByNormalisedForm.computeIfAbsent(normalisedForm, form -> new LinkedHashSet<>()).add(uri);
+        }));
+
+        Map<String, List<Integer>> formListsByGram = new HashMap<>();
+        int[] numberOfGramsByForm = new int[urisByNormalisedForm.size()];
+        String[][] urisByForm = new String[urisByNormalisedForm.size()][];
+        int form = 0;
+        for (Map.Entry<String, Set<String>> entry : urisByNormalisedForm.entrySet()) {
+            Set<String> grams = grams(entry.getKey());
+            for (String gram : grams) formListsByGram.computeIfAbsent(gram, key -> new ArrayList<>()).add(form);
+            numberOfGramsByForm[form] = grams.size();
+            urisByForm[form] = entry.getValue().toArray(new String[0]);
+            form++;
+        }
+
+        Map<String, int[]> formsByGram = new HashMap<>(formListsByGram.size() * 2);
+        formListsByGram.forEach((gram, forms) -> formsByGram.put(gram, forms.stream().mapToInt(Integer::intValue).toArray()));
+        return new FuzzySurfaceFormIndex(formsByGram, numberOfGramsByForm, urisByForm);
+    }
+
+    public int getNumberOfSurfaceForms() {
+        return urisByForm.length;
+    }
+
+    /**
+     * @param minScore the score, between 0 and 1, below which surface forms are not returned
+     * @return at most maxNumberOfResults resources, each with the score of its best matching surface form, sorted by
+     * decreasing score. A score of 1 is an exact match once case and punctuation are ignored.
+     */
+    public List<OntologySearchResult> search(String query, int maxNumberOfResults, double minScore) {
+        if (maxNumberOfResults < 1)
+            throw new IllegalArgumentException(String.format("The max number of results must be positive, found [%d]", maxNumberOfResults));
+        if (minScore < 0 || minScore > 1)
+            throw new IllegalArgumentException(String.format("[%f] is an invalid score, the score must be a value between 0 and 1", minScore));
+        Set<String> queryGrams = grams(normalise(query));
+        if (queryGrams.isEmpty()) return new ArrayList<>();
+
+        // the trigrams shared by the query and each surface form, for the surface forms sharing at least one
+        int[] sharedGramsByForm = new int[urisByForm.length];
+        List<Integer> candidateForms = new ArrayList<>();
+        for (String gram : queryGrams) {
+            for (int form : formsByGram.getOrDefault(gram, NO_FORMS)) {
+                if (sharedGramsByForm[form]++ == 0) candidateForms.add(form);
+            }
+        }
+
+        Map<String, Double> scoresByUri = new HashMap<>();
+        for (int form : candidateForms) {
+            double score = 2.0 * sharedGramsByForm[form] / (queryGrams.size() + numberOfGramsByForm[form]);
+            if (score < minScore) continue;
+            for (String uri : urisByForm[form]) scoresByUri.merge(uri, score, Math::max);
+        }
+
+        return scoresByUri.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+                .limit(maxNumberOfResults)
+                .map(entry -> new OntologySearchResult(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the lowercased words of the text, made of letters and digits, separated by a space
+     */
+    static String normalise(String text) {
+        StringBuilder normalised = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalised.append(Character.toLowerCase(c));
+            } else if (normalised.length() > 0 && normalised.charAt(normalised.length() - 1) != ' ') {
+                normalised.append(' ');
+            }
+        }
+        int length = normalised.length();
+        return length > 0 && normalised.charAt(length - 1) == ' ' ? normalised.substring(0, length - 1) : normalised.toString();
+    }
+
+    private static Set<String> grams(String normalisedText) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (normalisedText.isEmpty()) return grams;
+        for (String word : normalisedText.split(" ")) {
+            // the end of a word is not marked, so that truncated words match the beginning of the full ones
+            String markedWord = WORD_BEGIN + word;
+            if (markedWord.length() <= GRAM_LENGTH) {
+                grams.add(markedWord);
+                continue;
+            }
+            for (int i = 0; i + GRAM_LENGTH <= markedWord.length(); i++) grams.add(markedWord.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+}
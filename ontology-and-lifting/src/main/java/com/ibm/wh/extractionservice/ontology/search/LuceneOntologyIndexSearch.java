@@ -0,0 +1,324 @@
+package com.ibm.wh.extractionservice.ontology.search;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.jena.graph.GraphEvents;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelChangedListener;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.QueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.ibm.wh.extractionservice.ontology.DomainOntology;
+
+/**
+ * Full-text search over the values of the indexable properties (e.g. rdfs:label) of the resources of the domain
+ * ontology. Each value is indexed as a separate document, and a resource is scored with its best matching value.
+ * <p>
+ * The index is kept in memory, or memory-mapped from `ontology.search.index.directory` when set, and it is rebuilt
+ * at every start. Searches go through a shared {@link SearcherManager}, so they run concurrently without locking.
+ * <p>
+ * Values added to or removed from the ontology model afterwards are applied to the index as they happen, and they
+ * become searchable within `ontology.search.index.refresh-interval-ms`, when the searcher is refreshed. Only the
+ * asserted values are indexed, not the inferred ones, since the changes of the model are notified only for them. After
+ * a removal that may affect any resource, the index is built again in the background.
+ */
+@Service
+public class LuceneOntologyIndexSearch implements OntologyIndexSearch {
+
+    private static final Logger logger = LoggerFactory.getLogger(LuceneOntologyIndexSearch.class);
+
+    private static final String URI_FIELD = "uri";
+    private static final String VALUE_FIELD = "value";
+    // identifies the document of a statement, to delete it when the statement is removed
+    private static final String STATEMENT_FIELD = "statement";
+
+    private final OntModel model;
+    // the statements indexed, without inference
+    private final Model assertedModel;
+    private final Set<Property> indexableProperties;
+    private final Analyzer analyzer;
+    private final Directory directory;
+    private final IndexWriter indexWriter;
+    private final SearcherManager searcherManager;
+    private final ModelChangedListener indexUpdater = new IndexUpdater();
+    private final ScheduledExecutorService refreshExecutor;
+    private final AtomicBoolean reindexScheduled = new AtomicBoolean();
+
+    @Autowired
+    public LuceneOntologyIndexSearch(
+            DomainOntology domainOntology,
+            Analyzer analyzer,
+            @Qualifier("urisOfIndexablePropertiesForLuceneIndex") Set<String> urisOfIndexableProperties,
+            @Value("${ontology.search.index.directory:}") String indexDirectory,
+            @Value("${ontology.search.index.refresh-interval-ms:1000}") long refreshIntervalInMillis
+    ) {
+        if (refreshIntervalInMillis < 1)
+            throw new IllegalArgumentException(String.format("The refresh interval must be positive, found [%d]", refreshIntervalInMillis));
+        this.model = domainOntology.getOntModel();
+        this.assertedModel = model.getRawModel();
+        this.indexableProperties = urisOfIndexableProperties.stream()
+                .map(ResourceFactory::createProperty)
+                .collect(Collectors.toSet());
+        this.analyzer = analyzer;
+        try {
+            this.directory = indexDirectory.isEmpty() ? new ByteBuffersDirectory() : new MMapDirectory(Paths.get(indexDirectory));
+            this.indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer).setOpenMode(OpenMode.CREATE));
+            int documents = indexValues(null);
+            indexWriter.commit();
+            this.searcherManager = new SearcherManager(indexWriter, null);
+            logger.info("Indexed {} values of the properties {} for the ontology search", documents, urisOfIndexableProperties);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // before registering the updater, that schedules the full reindexing on it
+        this.refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ontology-search-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.scheduleWithFixedDelay(this::refresh, refreshIntervalInMillis, refreshIntervalInMillis, TimeUnit.MILLISECONDS);
+        model.register(indexUpdater);
+    }
+
+    /**
+     * Indexes the values of the resource, or of all the resources if null, that must not be in the index already
+     */
+    private int indexValues(Resource resource) throws IOException {
+        int documents = 0;
+        for (Property property : indexableProperties) {
+            StmtIterator statements = assertedModel.listStatements(resource, property, (RDFNode) null);
+            try {
+                while (statements.hasNext()) {
+                    Statement statement = statements.next();
+                    if (!isIndexable(statement)) continue;
+                    indexWriter.addDocument(toDocument(statement));
+                    documents++;
+                }
+            } finally {
+                statements.close();
+            }
+        }
+        return documents;
+    }
+
+    private boolean isIndexable(Statement statement) {
+        return statement.getSubject().isURIResource()
+                && statement.getObject().isLiteral()
+                && indexableProperties.contains(statement.getPredicate());
+    }
+
+    private static Document toDocument(Statement statement) {
+        Document document = new Document();
+        document.add(new StringField(URI_FIELD, statement.getSubject().getURI(), Field.Store.YES));
+        document.add(new StringField(STATEMENT_FIELD, statementTerm(statement).text(), Field.Store.NO));
+        document.add(new TextField(VALUE_FIELD, statement.getObject().asLiteral().getString(), Field.Store.NO));
+        return document;
+    }
+
+    private static Term statementTerm(Statement statement) {
+        return new Term(STATEMENT_FIELD, String.join("\n",
+                statement.getSubject().getURI(),
+                statement.getPredicate().getURI(),
+                statement.getObject().asLiteral().getLexicalForm(),
+                statement.getObject().asLiteral().getDatatypeURI(),
+                statement.getObject().asLiteral().getLanguage()));
+    }
+
+    private void scheduleReindex() {
+        // the removals notified before the reindexing starts are all covered by it
+        if (reindexScheduled.compareAndSet(false, true)) refreshExecutor.execute(this::reindex);
+    }
+
+    private void reindex() {
+        reindexScheduled.set(false);
+        try {
+            // the values indexed meanwhile by the updater may be indexed twice, their documents are deleted together
+            indexWriter.deleteAll();
+            int documents = indexValues(null);
+            searcherManager.maybeRefresh();
+            logger.info("Indexed again {} values for the ontology search", documents);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Cannot index again the values for the ontology search", e);
+        }
+    }
+
+    /**
+     * Makes the changes applied to the index so far visible to the searches, without waiting for the periodic refresh
+     */
+    public void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            // the next refresh will try again
+            logger.error("Cannot refresh the ontology search index", e);
+        }
+    }
+
+    /**
+     * @return at most maxNumberOfResults resources, sorted by decreasing score
+     */
+    @Override
+    public List<OntologySearchResult> search(String queryString, int maxNumberOfResults) {
+        if (maxNumberOfResults < 1)
+            throw new IllegalArgumentException(String.format("The max number of results must be positive, found [%d]", maxNumberOfResults));
+        Query query = parse(queryString);
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                return search(searcher, query, maxNumberOfResults);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<OntologySearchResult> search(IndexSearcher searcher, Query query, int maxNumberOfResults) throws IOException {
+        // several values of the same resource may match, the best one comes first
+        Map<String, Double> scoresByUri = new LinkedHashMap<>();
+        ScoreDoc after = null;
+        while (scoresByUri.size() < maxNumberOfResults) {
+            TopDocs topDocs = searcher.searchAfter(after, query, 2 * maxNumberOfResults);
+            if (topDocs.scoreDocs.length == 0) break;
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                String uri = searcher.doc(scoreDoc.doc).get(URI_FIELD);
+                scoresByUri.putIfAbsent(uri, (double) scoreDoc.score);
+                if (scoresByUri.size() == maxNumberOfResults) break;
+            }
+            after = topDocs.scoreDocs[topDocs.scoreDocs.length - 1];
+        }
+
+        List<OntologySearchResult> results = new ArrayList<>(scoresByUri.size());
+        scoresByUri.forEach((uri, score) -> results.add(new OntologySearchResult(uri, score)));
+        return results;
+    }
+
+    private Query parse(String queryString) {
+        if (queryString == null || queryString.trim().isEmpty())
+            throw new IllegalArgumentException("The query cannot be empty");
+        // the query is free text, not Lucene syntax: any of its terms may match
+        Query query = new QueryBuilder(analyzer).createBooleanQuery(VALUE_FIELD, queryString);
+        // e.g. when the query is made only of stop words
+        return query == null ? new MatchNoDocsQuery() : query;
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        model.unregister(indexUpdater);
+        // a reindexing in progress is not interrupted, since interrupting a thread writing to the directory closes it
+        refreshExecutor.shutdown();
+        try {
+            if (!refreshExecutor.awaitTermination(1, TimeUnit.MINUTES))
+                logger.warn("The ontology search index is closed while it is indexed again");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            searcherManager.close();
+            indexWriter.close();
+            directory.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Applies the changes of the model to the index. The model has already changed when the updater is notified, so
+     * a failure is logged rather than propagated to the code changing the model.
+     */
+    private class IndexUpdater extends StatementListener {
+
+        @Override
+        public void addedStatement(Statement statement) {
+            if (!isIndexable(statement)) return;
+            try {
+                // the same statement may be added more than once
+                indexWriter.updateDocument(statementTerm(statement), toDocument(statement));
+            } catch (IOException | RuntimeException e) {
+                logger.error(String.format("Cannot index statement %s", statement), e);
+            }
+        }
+
+        @Override
+        public void removedStatement(Statement statement) {
+            if (!isIndexable(statement)) return;
+            try {
+                indexWriter.deleteDocuments(statementTerm(statement));
+            } catch (IOException | RuntimeException e) {
+                logger.error(String.format("Cannot remove statement %s from the index", statement), e);
+            }
+        }
+
+        @Override
+        public void notifyEvent(Model changedModel, Object event) {
+            // removals by pattern are not notified statement by statement
+            if (!(event instanceof GraphEvents)) return;
+            GraphEvents graphEvent = (GraphEvents) event;
+            try {
+                if (graphEvent.getTitle().equals("remove") && ((Triple) graphEvent.getContent()).getSubject().isURI()) {
+                    // the values of the subject left in the model are indexed again
+                    Node subject = ((Triple) graphEvent.getContent()).getSubject();
+                    indexWriter.deleteDocuments(new Term(URI_FIELD, subject.getURI()));
+                    indexValues(assertedModel.getResource(subject.getURI()));
+                } else if (graphEvent.getTitle().equals("remove") || graphEvent.getTitle().equals("removeAll")) {
+                    // any value may be gone, reading them all again would block the code changing the model
+                    scheduleReindex();
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error(String.format("Cannot apply %s to the index", graphEvent.getTitle()), e);
+            }
+        }
+
+    }
+
+}
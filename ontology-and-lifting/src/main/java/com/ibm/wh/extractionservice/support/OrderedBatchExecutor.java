@@ -0,0 +1,111 @@
+package com.ibm.wh.extractionservice.support;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Runs batches of work, such as the sentences of a document or the chunks of a csv, on a fork-join pool shared by all
+ * the requests of a service, so that concurrent requests do not use more than the configured threads. The results of
+ * the batches of a request are passed to its consumer in the same order the batches are submitted, see
+ * {@link #newBatches(int, String, Consumer)}.
+ * <p>
+ * Each service has its own executor, sized by its {@code *.parallelism} property: 0, the default, sizes it to the
+ * available processors, so the pools of services busy at the same time may together use more threads than processors.
+ */
+public class OrderedBatchExecutor implements AutoCloseable {
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param parallelism the number of threads, 0 for a thread per available processor
+     */
+    public OrderedBatchExecutor(int parallelism) {
+        if (parallelism < 0)
+            throw new IllegalArgumentException(String.format("The parallelism cannot be negative, found [%d]", parallelism));
+        this.parallelism = parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+        this.pool = new ForkJoinPool(this.parallelism);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Starts a sequence of batches, whose results are passed to the consumer in the order of the batches. At most twice
+     * as many batches as the given parallelism are pending at any time: submitting one more waits for the first to
+     * complete, so that the batches kept in memory do not depend on the size of the input.
+     *
+     * @param batchesInParallel the batches of the sequence that can run at the same time, at most the parallelism of
+     *                          the executor
+     * @param activity          what the batches do, for the error messages, e.g. "annotating sentences"
+     */
+    public <R> Batches<R> newBatches(int batchesInParallel, String activity, Consumer<? super R> consumer) {
+        if (batchesInParallel < 1)
+            throw new IllegalArgumentException(String.format("The batches in parallel must be positive, found [%d]", batchesInParallel));
+        return new Batches<>(2 * Math.min(batchesInParallel, parallelism), activity, consumer);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * The batches of a request, to be closed once submitted and finished, or after a failure to cancel the batches not
+     * completed yet
+     */
+    public class Batches<R> implements AutoCloseable {
+
+        private final int maxPendingBatches;
+        private final String activity;
+        private final Consumer<? super R> consumer;
+        private final Deque<Future<? extends Collection<? extends R>>> pendingBatches = new ArrayDeque<>();
+
+        private Batches(int maxPendingBatches, String activity, Consumer<? super R> consumer) {
+            this.maxPendingBatches = maxPendingBatches;
+            this.activity = activity;
+            this.consumer = consumer;
+        }
+
+        public void submit(Callable<? extends Collection<? extends R>> batch) {
+            pendingBatches.add(pool.submit(batch));
+            if (pendingBatches.size() >= maxPendingBatches) consumeFirstBatch();
+        }
+
+        /**
+         * Waits for all the batches submitted and passes their results to the consumer
+         */
+        public void finish() {
+            while (!pendingBatches.isEmpty()) consumeFirstBatch();
+        }
+
+        private void consumeFirstBatch() {
+            Collection<? extends R> results;
+            try {
+                results = pendingBatches.poll().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(String.format("Interrupted while %s", activity), e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw new RuntimeException(String.format("Something bad happened when %s", activity), e.getCause());
+            }
+            results.forEach(consumer);
+        }
+
+        @Override
+        public void close() {
+            pendingBatches.forEach(pendingBatch -> pendingBatch.cancel(true));
+            pendingBatches.clear();
+        }
+
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.ibm.wh.extractionservice.support;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+
+/**
+ * A value serialized once as JSON, with a strong entity tag computed from the serialized bytes, so that it can be
+ * served any number of times, or not at all when the client has it already, without serializing it again.
+ */
+public final class PreSerializedJson {
+
+    private final byte[] bytes;
+    private final String eTag;
+
+    private PreSerializedJson(byte[] bytes) {
+        this.bytes = bytes;
+        this.eTag = '"' + Hashing.murmur3_128().hashBytes(bytes).toString() + '"';
+    }
+
+    public static PreSerializedJson of(ObjectMapper objectMapper, Object value) {
+        try {
+            return new PreSerializedJson(objectMapper.writeValueAsBytes(value));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(String.format("Unable to serialize %s as JSON", value.getClass().getSimpleName()), e);
+        }
+    }
+
+    /**
+     * @return the serialized value, that must not be modified
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the entity tag, quoted
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.ibm.wh.extractionservice.support.jena;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.apache.jena.graph.GraphEvents;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Statement;
+
+/**
+ * Runs the change every time a statement matching the filter is added to or removed from the model it is registered
+ * on. Removals by pattern, such as {@link Model#removeAll(org.apache.jena.rdf.model.Resource,
+ * org.apache.jena.rdf.model.Property, org.apache.jena.rdf.model.RDFNode)}, are not notified statement by statement,
+ * so they always run the invalidation.
+ */
+class InvalidatingStatementListener extends StatementListener {
+
+    private final Predicate<Statement> filter;
+    private final Consumer<Statement> change;
+    private final Runnable invalidation;
+
+    InvalidatingStatementListener(Predicate<Statement> filter, Consumer<Statement> change, Runnable invalidation) {
+        this.filter = filter;
+        this.change = change;
+        this.invalidation = invalidation;
+    }
+
+    @Override
+    public void addedStatement(Statement statement) {
+        if (filter.test(statement)) change.accept(statement);
+    }
+
+    @Override
+    public void removedStatement(Statement statement) {
+        if (filter.test(statement)) change.accept(statement);
+    }
+
+    @Override
+    public void notifyEvent(Model model, Object event) {
+        if (event instanceof GraphEvents) invalidation.run();
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.ibm.wh.extractionservice.support.jena;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.rdf.model.ModelChangedListener;
+import org.apache.jena.rdf.model.Statement;
+
+/**
+ * A value computed from a model, such as an index, that is computed on first use and computed again only after a
+ * change to the model that may affect it. Changes are detected by a listener registered on the model, so changes made
+ * to the graph of the model without going through the model must be followed by {@link #invalidate()}.
+ * <p>
+ * A cache created with an {@link Update} applies the changes of some statements to the current value instead, at the
+ * first use after them. Caches must be closed once no longer used, so that the model does not keep their listener.
+ * Instances are thread-safe.
+ */
+public class ModelCache<T> implements AutoCloseable {
+
+    // beyond this number of changes not applied yet, computing the value again is cheaper than applying them
+    private static final int MAX_PENDING_CHANGES = 10_000;
+
+    private final Function<OntModel, T> builder;
+    private final Predicate<Statement> updatableStatement;
+    private final Update<T> update;
+    // incremented at every relevant change to the model that is not applied with the update
+    private final AtomicLong version = new AtomicLong();
+    private final Queue<Statement> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingChangesCount = new AtomicInteger();
+    private final ModelChangedListener listener;
+    private volatile Entry<T> entry;
+
+    /**
+     * @param relevantStatement whether adding or removing a statement may change the value
+     */
+    public ModelCache(Predicate<Statement> relevantStatement, Function<OntModel, T> builder) {
+        this(relevantStatement, statement -> false, builder, null);
+    }
+
+    /**
+     * @param relevantStatement  whether adding or removing a statement may change the value
+     * @param updatableStatement whether the change of a relevant statement can be applied with the update, instead of
+     *                           computing the value again
+     */
+    public ModelCache(Predicate<Statement> relevantStatement, Predicate<Statement> updatableStatement, Function<OntModel, T> builder, Update<T> update) {
+        this.builder = builder;
+        this.updatableStatement = updatableStatement;
+        this.update = update;
+        this.listener = new InvalidatingStatementListener(relevantStatement, this::onChange, version::incrementAndGet);
+    }
+
+    private void onChange(Statement statement) {
+        if (!updatableStatement.test(statement) || pendingChangesCount.incrementAndGet() > MAX_PENDING_CHANGES) {
+            version.incrementAndGet();
+            return;
+        }
+        pendingChanges.add(statement);
+    }
+
+    public T get(OntModel model) {
+        Entry<T> current = entry;
+        if (current != null && current.isBuiltFor(model, version.get()) && pendingChangesCount.get() == 0) return current.value;
+        synchronized (version) {
+            current = entry;
+            if (current != null && current.isBuiltFor(model, version.get())) {
+                if (pendingChangesCount.get() == 0) return current.value;
+                current = new Entry<>(model, current.version, update.apply(model, current.value, pollPendingChanges()));
+                entry = current;
+                return current.value;
+            }
+            if (current == null || current.model != model) {
+                // first value for this model, e.g. after the model has been replaced
+                if (current != null) current.model.unregister(listener);
+                model.register(listener);
+            }
+            long builtVersion = version.get();
+            // the new value reads the changes from the model
+            clearPendingChanges();
+            current = new Entry<>(model, builtVersion, builder.apply(model));
+            entry = current;
+            return current.value;
+        }
+    }
+
+    /**
+     * Starts from a value already computed for a model with the same statements, e.g. the model a layered model reads,
+     * instead of computing it again on first use. The value is kept until the next relevant change to the model.
+     */
+    public void initialize(OntModel model, T value) {
+        synchronized (version) {
+            Entry<T> current = entry;
+            if (current == null || current.model != model) {
+                if (current != null) current.model.unregister(listener);
+                model.register(listener);
+            }
+            clearPendingChanges();
+            entry = new Entry<>(model, version.get(), value);
+        }
+    }
+
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return a number that changes every time the value is invalidated, changes applied with the update excluded
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Unregisters the listener from the model and drops the value, that is computed again if the cache is used again
+     */
+    @Override
+    public void close() {
+        synchronized (version) {
+            Entry<T> current = entry;
+            if (current != null) current.model.unregister(listener);
+            entry = null;
+            clearPendingChanges();
+        }
+    }
+
+    private List<Statement> pollPendingChanges() {
+        List<Statement> changes = new ArrayList<>();
+        Statement change;
+        while ((change = pendingChanges.poll()) != null) {
+            changes.add(change);
+            pendingChangesCount.decrementAndGet();
+        }
+        return changes;
+    }
+
+    private void clearPendingChanges() {
+        pollPendingChanges();
+        pendingChangesCount.set(0);
+    }
+
+    /**
+     * Applies changes of the model to a value computed from it. Additions are not told apart from removals, so the
+     * update should read again from the model the parts of the value they may affect.
+     */
+    @FunctionalInterface
+    public interface Update<T> {
+
+        /**
+         * @return the value with the changes applied, the given value is not modified since it may be in use
+         */
+        T apply(OntModel model, T value, List<Statement> changes);
+
+    }
+
+    private static class Entry<T> {
+
+        private final OntModel model;
+        private final long version;
+        private final T value;
+
+        Entry(OntModel model, long version, T value) {
+            this.model = model;
+            this.version = version;
+            this.value = value;
+        }
+
+        boolean isBuiltFor(OntModel model, long version) {
+            return this.model == model && this.version == version;
+        }
+
+    }
+
+}
@@ -2,16 +2,23 @@ package com.ibm.wh.extractionservice.support.jena;
 
 import com.github.jsonldjava.core.JsonLdOptions;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.apache.jena.ext.com.google.common.base.CaseFormat;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.TripleBoundary;
+import org.apache.jena.graph.compose.Polyadic;
 import org.apache.jena.ontology.*;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.rdf.model.*;
 import org.apache.jena.rdf.model.impl.Util;
+import org.apache.jena.reasoner.InfGraph;
 import org.apache.jena.riot.RDFWriter;
 import org.apache.jena.riot.*;
 import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.util.iterator.ExtendedIterator;
 import org.apache.jena.vocabulary.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,7 +28,10 @@ import java.io.InputStream;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.regex.Pattern;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.ibm.wh.extractionservice.commons.utils.CollectionsUtils.any;
 import static com.ibm.wh.extractionservice.commons.utils.CollectionsUtils.optionalAny;
@@ -32,6 +42,8 @@ public class Models {
 
     private static final Logger logger = LoggerFactory.getLogger(Models.class);
 
+    private static final Pattern NOT_ALLOWED_IN_INDIVIDUAL_NAME = Pattern.compile("[^a-zA-Z\\d\\s:]");
+
     public static final Resource DOUBLE_DATATYPE = XSD.xdouble;
     public static final Resource INTEGER_DATATYPE = XSD.xint;
     public static final Resource STRING_DATATYPE = XSD.xstring;
@@ -372,22 +384,44 @@ public class Models {
         if (rootNode.isLiteral()) return rootNode.asLiteral().getValue().toString().hashCode();
         if (rootNode.isURIResource()) return rootNode.asResource().getURI().hashCode();
 
-        return getGraphHashCode(extractSubgraphIgnoringReifiedStatements(rootNode.asResource()).listStatements().toList());
+        Model model = rootNode.getModel();
+        return SubgraphExtractor.extractTriples(model.getGraph(), rootNode.asNode(), SubgraphExtractor.STOP_AT_REIFIED_STATEMENT_SOURCE.asTripleBoundary(model), false)
+                .stream()
+                .mapToInt(Models::getTripleHashCode)
+                .sum();
+    }
+
+    /**
+     * Unlike {@link #getSubgraphHashCode(RDFNode)}, tells apart subgraphs that only differ in how their anonymous
+     * resources are linked, see {@link SubgraphDigests}. Use {@link OntModelAdapter#getSubgraphDigests()} to digest
+     * many resources of the same model.
+     */
+    public static SubgraphDigest getSubgraphDigest(RDFNode rootNode) {
+        if (rootNode.isLiteral()) return SubgraphDigests.digest(Collections.emptyList(), rootNode.asNode());
+        Model model = rootNode.getModel();
+        return SubgraphDigests.digest(
+                SubgraphExtractor.extractTriples(model.getGraph(), rootNode.asNode(), SubgraphExtractor.STOP_AT_REIFIED_STATEMENT_SOURCE.asTripleBoundary(model), false),
+                rootNode.asNode());
     }
 
     public static int getStatementHashCode(Statement statement) {
-        String urisString = "";
-        urisString += statement.getSubject().isAnon() ? "AnonNode " : statement.getSubject().getURI() + ' ';
-        urisString += statement.getPredicate().isAnon() ? "AnonNode " : statement.getPredicate().getURI() + ' ';
-
-        if (statement.getObject().isLiteral())
-            urisString += statement.getObject().asLiteral().getValue().toString();
-        else if (statement.getObject().isAnon())
-            urisString += "AnonNode";
+        return getTripleHashCode(statement.asTriple());
+    }
+
+    private static int getTripleHashCode(Triple triple) {
+        StringBuilder urisString = new StringBuilder();
+        urisString.append(triple.getSubject().isBlank() ? "AnonNode " : triple.getSubject().getURI() + ' ');
+        urisString.append(triple.getPredicate().isBlank() ? "AnonNode " : triple.getPredicate().getURI() + ' ');
+
+        Node object = triple.getObject();
+        if (object.isLiteral())
+            urisString.append(object.getLiteralValue().toString());
+        else if (object.isBlank())
+            urisString.append("AnonNode");
         else
-            urisString += statement.getObject().asResource().getURI();
+            urisString.append(object.getURI());
 
-        return urisString.hashCode();
+        return urisString.toString().hashCode();
     }
 
     public static int getGraphHashCode(Collection<Statement> statements) {
@@ -398,74 +432,135 @@ public class Models {
     }
 
     public static void deepDeleteResource(Resource resourceToDelete) {
-        // As first step remove all statements with as object the resource to remove and as subject
-        // a resource that is not a ReifiedStatement
-        deleteIncomingStatements(resourceToDelete);
-        deleteOutgoingSubgraph(resourceToDelete);
+        deepDeleteResources(resourceToDelete.getModel(), Collections.singleton(resourceToDelete));
     }
 
-    private static void deleteOutgoingSubgraph(Resource resourceToDelete) {
-        Model model = resourceToDelete.getModel();
-
-        Set<Statement> statementsToDelete = extractSubgraphKeepingReifiedStatements(resourceToDelete).listStatements().toSet();
-        if (statementsToDelete.isEmpty()) return;
+    /**
+     * Deletes the resources and the subgraphs rooted in them, computing what to delete once for all the resources:
+     * <ul>
+     * <li>the statements having one of the resources as object, and recursively the reified statements of these
+     * statements, as further resources to delete</li>
+     * <li>the subgraphs of the resources, reified statements included, except the subgraphs of the properties and
+     * resources still used by statements that are not deleted, e.g. the definitions of classes and properties</li>
+     * </ul>
+     * Whether a node is still used is looked up in the indexes of the graph, visiting only the statements using it, and
+     * the statements are removed at once.
+     *
+     * @return the number of triples removed from the stored statements, i.e. the triples of the subgraphs that are
+     * stored in the base graph of the model, not inferred nor imported
+     */
+    public static int deepDeleteResources(Model model, Collection<? extends Resource> resourcesToDelete) {
+        Graph graph = model.getGraph();
+
+        Set<Node> roots = new LinkedHashSet<>();
+        Set<Triple> incomingTriples = new HashSet<>();
+        Deque<Node> pending = new ArrayDeque<>();
+        resourcesToDelete.stream()
+                .map(Resource::asNode)
+                .filter(roots::add)
+                .forEach(pending::add);
+        while (!pending.isEmpty()) {
+            for (Triple incomingTriple : getIncomingTriples(graph, pending.pop())) {
+                incomingTriples.add(incomingTriple);
+                for (Node reifier : getReifiers(graph, incomingTriple))
+                    if (roots.add(reifier)) pending.add(reifier);
+            }
+        }
 
-        Set<Statement> remainingStatements = model.listStatements().toSet();
-        remainingStatements.removeAll(statementsToDelete);
+        // the statements having the resources as object are deleted anyway, and the subgraphs are not extended through them
+        TripleBoundary stopAtReifiedStatementSource = SubgraphExtractor.STOP_AT_REIFIED_STATEMENT_SOURCE.asTripleBoundary(model);
+        TripleBoundary boundary = triple -> stopAtReifiedStatementSource.stopAt(triple) || incomingTriples.contains(triple);
+        Set<Triple> subgraphTriples = new HashSet<>(SubgraphExtractor.extractTriples(graph, roots, boundary, true, false));
+        subgraphTriples.removeAll(incomingTriples);
 
-        // keep the definitions of the properties mentioned in the remaining model
-        Set<Property> remainingProperties = remainingStatements.stream()
-                .map(Statement::getPredicate)
-                .collect(Collectors.toSet());
+        Set<Triple> triplesToDelete = new HashSet<>(subgraphTriples);
+        triplesToDelete.addAll(incomingTriples);
 
-        Set<Statement> statementsToKeepForProperties = statementsToDelete.stream()
-                .map(Statement::getPredicate)
+        // keep the definitions of the properties and resources still used by the statements that are not deleted
+        Deque<Node> stillUsedNodes = subgraphTriples.stream()
+                .flatMap(triple -> Stream.of(triple.getPredicate(), triple.getObject()))
+                .filter(node -> !node.isLiteral() && !roots.contains(node))
                 .distinct()
-                .filter(remainingProperties::contains)
-                // here we have the properties that are still used by someone else
-                .map(property -> extractSubgraphKeepingReifiedStatements(property).listStatements().toSet())
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
-
-        // keep the definitions of the resources mentioned in the remaining model
-        Set<Resource> remainingObjectResources = remainingStatements.stream()
-                .map(Statement::getObject)
-                .filter(RDFNode::isResource)
-                .map(RDFNode::asResource)
-                .collect(Collectors.toSet());
+                .filter(node -> isUsedByOtherTriples(graph, node, triplesToDelete))
+                .collect(Collectors.toCollection(ArrayDeque::new));
+        if (!stillUsedNodes.isEmpty())
+            triplesToDelete.removeAll(getSubgraphTriplesNotEntering(roots, stillUsedNodes, subgraphTriples, boundary));
+
+        // inferred triples and the triples of imported models are not removed, even if they are in the subgraphs
+        Graph storedGraph = getStoredGraph(graph);
+        int numberOfStoredTriples = (int) triplesToDelete.stream()
+                .filter(storedGraph::contains)
+                .count();
+        GraphUtil.delete(graph, new ArrayList<>(triplesToDelete));
+        return numberOfStoredTriples;
+    }
+
+    // the graph where the triples are added and removed, below inference and imports
+    private static Graph getStoredGraph(Graph graph) {
+        if (graph instanceof InfGraph) return getStoredGraph(((InfGraph) graph).getRawGraph());
+        if (graph instanceof Polyadic) return getStoredGraph(((Polyadic) graph).getBaseGraph());
+        return graph;
+    }
+
+    // the subgraphs of the nodes within the given triples, that are the subgraphs of the roots, without entering the roots
+    private static Set<Triple> getSubgraphTriplesNotEntering(Set<Node> roots, Deque<Node> nodes, Set<Triple> subgraphTriples, TripleBoundary boundary) {
+        Map<Node, List<Triple>> triplesBySubject = subgraphTriples.stream()
+                .collect(Collectors.groupingBy(Triple::getSubject));
+        Map<Node, List<Node>> reifiersBySubject = subgraphTriples.stream()
+                .filter(triple -> triple.getPredicate().equals(RDF.Nodes.subject))
+                .collect(Collectors.groupingBy(Triple::getObject, Collectors.mapping(Triple::getSubject, Collectors.toList())));
+
+        Set<Node> visited = new HashSet<>(nodes);
+        Set<Triple> triples = new HashSet<>();
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            List<Node> reached = new ArrayList<>(reifiersBySubject.getOrDefault(node, Collections.emptyList()));
+            for (Triple triple : triplesBySubject.getOrDefault(node, Collections.emptyList())) {
+                triples.add(triple);
+                if (boundary.stopAt(triple)) continue;
+                reached.add(triple.getPredicate());
+                if (!triple.getObject().isLiteral()) reached.add(triple.getObject());
+            }
+            for (Node reachedNode : reached)
+                if (!roots.contains(reachedNode) && visited.add(reachedNode)) nodes.push(reachedNode);
+        }
+        return triples;
+    }
 
-        Set<Statement> statementsToKeepForObjects = statementsToDelete.stream()
-                .map(Statement::getObject)
-                .distinct()
-                .filter(RDFNode::isResource)
-                .map(RDFNode::asResource)
-                .filter(remainingObjectResources::contains)
-                // here we have the object resources that are still used by someone else
-                .map(objectResource -> extractSubgraphKeepingReifiedStatements(objectResource).listStatements().toSet())
-                .flatMap(Collection::stream)
-                .collect(Collectors.toSet());
+    // the statements with the node as object, except the ones reifying a statement
+    private static List<Triple> getIncomingTriples(Graph graph, Node node) {
+        return graph.find(Node.ANY, Node.ANY, node)
+                .filterDrop(Models::isReificationTriple)
+                .toList();
+    }
 
-        statementsToDelete.removeAll(statementsToKeepForProperties);
-        statementsToDelete.removeAll(statementsToKeepForObjects);
+    private static List<Node> getReifiers(Graph graph, Triple triple) {
+        return graph.find(Node.ANY, RDF.Nodes.subject, triple.getSubject())
+                .mapWith(Triple::getSubject)
+                .filterKeep(reifier -> graph.contains(reifier, RDF.Nodes.predicate, triple.getPredicate()))
+                .filterKeep(reifier -> graph.contains(reifier, RDF.Nodes.object, triple.getObject()))
+                .toList();
+    }
 
-        model.remove(Lists.newArrayList(statementsToDelete));
+    private static boolean isReificationTriple(Triple triple) {
+        Node predicate = triple.getPredicate();
+        return predicate.equals(RDF.Nodes.subject) || predicate.equals(RDF.Nodes.predicate) || predicate.equals(RDF.Nodes.object);
     }
 
-    private static void deleteIncomingStatements(Resource resourceToDelete) {
-        Model model = resourceToDelete.getModel();
-        List<Statement> incomingStatements = model.listStatements(null, null, resourceToDelete)
-                .filterDrop(statement -> statement.getPredicate().equals(RDF.subject))
-                .filterDrop(statement -> statement.getPredicate().equals(RDF.predicate))
-                .filterDrop(statement -> statement.getPredicate().equals(RDF.object))
-                .toList();
-        incomingStatements.forEach(statement -> deleteReifiedInformation(statement));
-        model.remove(incomingStatements);
+    // stops at the first triple using the node that is not among the given ones
+    private static boolean isUsedByOtherTriples(Graph graph, Node node, Set<Triple> triples) {
+        return containsOtherTriples(graph.find(Node.ANY, node, Node.ANY), triples)
+                || containsOtherTriples(graph.find(Node.ANY, Node.ANY, node), triples);
     }
 
-    private static void deleteReifiedInformation(Statement statement) {
-        List<ReifiedStatement> reifiedStatements = statement.listReifiedStatements().toList();
-        if (reifiedStatements.isEmpty()) return;
-        reifiedStatements.forEach(reifiedStatement -> deepDeleteResource(reifiedStatement));
+    private static boolean containsOtherTriples(ExtendedIterator<Triple> iterator, Set<Triple> triples) {
+        try {
+            while (iterator.hasNext())
+                if (!triples.contains(iterator.next())) return true;
+            return false;
+        } finally {
+            iterator.close();
+        }
     }
 
     public static Map<Property, List<Statement>> groupByProperty(List<Statement> statements) {
@@ -492,7 +587,13 @@ public class Models {
             // the smaller graph contains a non-anon node that is not in the bigger graph -> it's not a subgraph
             return false;
 
-        Set<Statement> smallerIndividualStatements = getStatementsWithSubject(smallerStatements, smaller);
+        return isSubtree(smaller, bigger);
+    }
+
+    // the recursive part of isSubgraph, that does not depend on the whole models and is not computed again for each
+    // anonymous object. Use SubgraphSubsumptionIndex to compare many resources
+    private static boolean isSubtree(Resource smaller, Resource bigger) {
+        Set<Statement> smallerIndividualStatements = smaller.listProperties().toSet();
 
         for (Statement smallerStatement : smallerIndividualStatements) {
             RDFNode smallerObject = smallerStatement.getObject();
@@ -510,7 +611,7 @@ public class Models {
                 return false;
             }
 
-            if (!isSubgraph(smallerObject.asResource(), any(biggerStatementsWithSameProperty).getObject().asResource()))
+            if (!isSubtree(smallerObject.asResource(), any(biggerStatementsWithSameProperty).getObject().asResource()))
                 return false;
         }
 
@@ -526,10 +627,6 @@ public class Models {
         return model.listStatements(subject, predicate, object).hasNext();
     }
 
-    private static Set<Statement> getStatementsWithSubject(List<Statement> statements, Resource subject) {
-        return statements.stream().filter(statement -> statement.getSubject().equals(subject)).collect(Collectors.toSet());
-    }
-
     private static Set<Property> getAllProperties(List<Statement> statements) {
         return statements.stream().map(Statement::getPredicate).collect(Collectors.toSet());
     }
@@ -577,9 +674,19 @@ public class Models {
     //
 
     public static boolean isValueCompatibleWithDatatype(String text, OntResource datatype) {
+        return valueCompatibilityWith(datatype).test(text);
+    }
+
+    /**
+     * Same check of {@link #isValueCompatibleWithDatatype(String, OntResource)}, reading the definition of the datatype
+     * from the model once, so that many values can be checked, also concurrently, without accessing the model
+     */
+    public static Predicate<String> valueCompatibilityWith(OntResource datatype) {
         if (isIntegerDatatype(datatype)) {
-            return isInteger(text.trim());
-        } else return isStringDatatype(datatype);
+            return text -> isInteger(text.trim());
+        }
+        boolean compatible = isStringDatatype(datatype);
+        return text -> compatible;
     }
 
     public static boolean isDatatype(OntResource resource) {
@@ -672,9 +779,23 @@ public class Models {
     }
 
     public static String generateUriForIndividual(String namespace, String individualTypeUri, String individualName) {
-        String cleanedIndividualName = (getIndividualNamePrefix(individualTypeUri) + toSnakeCase(individualName))
-                .replaceAll("[^a-zA-Z\\d\\s:]", "_");
-        return namespace + cleanedIndividualName;
+        return generateUriForIndividualWithPrefix(getIndividualUriPrefix(namespace, individualTypeUri), individualName);
+    }
+
+    /**
+     * Same as {@link #generateUriForIndividual(String, String, String)}, given the prefix computed by
+     * {@link #getIndividualUriPrefix(String, String)}. Useful when generating many uris for individuals of the same type.
+     */
+    public static String generateUriForIndividualWithPrefix(String individualUriPrefix, String individualName) {
+        return individualUriPrefix + cleanIndividualName(toSnakeCase(individualName));
+    }
+
+    public static String getIndividualUriPrefix(String namespace, String individualTypeUri) {
+        return namespace + cleanIndividualName(getIndividualNamePrefix(individualTypeUri));
+    }
+
+    private static String cleanIndividualName(String individualName) {
+        return NOT_ALLOWED_IN_INDIVIDUAL_NAME.matcher(individualName).replaceAll("_");
     }
 
     private static String getIndividualNamePrefix(String individualTypeUri) {
@@ -687,7 +808,7 @@ public class Models {
     private static String toSnakeCase(String name) {
         return name.trim()
                 .toLowerCase()
-                .replaceAll(" ", "_");
+                .replace(' ', '_');
     }
 
     public static Property property(String propertyUri) {
@@ -14,9 +14,12 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +29,9 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.ontology.AnnotationProperty;
 import org.apache.jena.ontology.DatatypeProperty;
 import org.apache.jena.ontology.Individual;
@@ -62,6 +68,9 @@ public class OntModelAdapter {
     protected final String namespace;
     protected final boolean isRdfsInferenceEnabled;
     protected OntModel model;
+    private final ModelCache<SchemaIndex> schemaIndex = new ModelCache<>(SchemaIndex::isSchemaStatement, this::buildSchemaIndex);
+    // any statement may belong to the subgraph of some resource
+    private final ModelCache<SubgraphDigests> subgraphDigests = new ModelCache<>(statement -> true, this::buildSubgraphDigests);
 
     protected OntModelAdapter(String baseNamespace, boolean enableRdfsInference) {
         namespace = baseNamespace;
@@ -72,7 +81,18 @@ public class OntModelAdapter {
     protected OntModelAdapter(Collection<String> ontologyFilePaths, String ontologyFileSyntax, String baseNamespace, boolean enableRdfsInference) {
         this(baseNamespace, enableRdfsInference);
         model = newOwlOntModel(namespace, isRdfsInferenceEnabled);
-        ontologyFilePaths.forEach(ontologyFile -> model.read(Paths.get(ontologyFile).toUri().toString(), ontologyFileSyntax));
+        readOntologyFiles(ontologyFilePaths, ontologyFileSyntax);
+    }
+
+    /**
+     * Wraps the model, without copying it, with the namespace and the inference setting of the adapter it has been
+     * cloned from. The setting is not read from the model: a layered model has no reasoner of its own, yet it reads
+     * the inferred statements of its source.
+     */
+    protected OntModelAdapter(OntModel model, OntModelAdapter source) {
+        this.namespace = source.namespace;
+        this.model = model;
+        this.isRdfsInferenceEnabled = source.isRdfsInferenceEnabled;
     }
 
     protected OntModelAdapter(OntModel model, String baseNamespace, boolean enableRdfsInference) {
@@ -100,10 +120,67 @@ public class OntModelAdapter {
                 .setNsPrefix("", namespace);
     }
 
+    /**
+     * Creates a model with the same specification of {@link #newOwlOntModel(String, boolean)} on top of existing
+     * statements, without copying them.
+     */
+    protected OntModel newOwlOntModel(Model baseModel, String namespace, boolean enableRdfsInference) {
+        OntModelSpec ontModelSpec = enableRdfsInference ? OntModelSpec.OWL_MEM_RDFS_INF : OntModelSpec.OWL_MEM;
+        return (OntModel) ModelFactory.createOntologyModel(ontModelSpec, baseModel)
+                .setNsPrefix("", namespace);
+    }
+
+    protected void readOntologyFiles(Collection<String> ontologyFilePaths, String ontologyFileSyntax) {
+        ontologyFilePaths.forEach(ontologyFile -> model.read(Paths.get(ontologyFile).toUri().toString(), ontologyFileSyntax));
+    }
+
     protected void replaceModel(OntModel model) {
         this.model = model;
     }
 
+    /**
+     * Gets the index of the domains and ranges of the properties of the model, building it if the model changed since
+     * the last call. Changes made to the graph of the model without going through the model are not detected, call
+     * {@link #invalidateModelCaches()} after them.
+     */
+    public SchemaIndex getSchemaIndex() {
+        return schemaIndex.get(model);
+    }
+
+    private SchemaIndex buildSchemaIndex(OntModel model) {
+        return SchemaIndex.build(model, namespace);
+    }
+
+    /**
+     * Gets the digests of the subgraphs of the resources of the model, see {@link SubgraphDigests}, computed on first
+     * request for each resource and computed again after any change to the model
+     */
+    public SubgraphDigests getSubgraphDigests() {
+        return subgraphDigests.get(model);
+    }
+
+    private SubgraphDigests buildSubgraphDigests(OntModel model) {
+        return new SubgraphDigests(model.getGraph(), SubgraphExtractor.STOP_AT_REIFIED_STATEMENT_SOURCE.asTripleBoundary(model));
+    }
+
+    /**
+     * Drops all the values computed from the model, to be called after changing the graph of the model without going
+     * through the model.
+     */
+    protected void invalidateModelCaches() {
+        schemaIndex.invalidate();
+        subgraphDigests.invalidate();
+    }
+
+    /**
+     * Starts the values computed from the model from the ones of the source, that must have the same statements, e.g.
+     * the adapter a layered model reads. They are computed again only after a change to the model.
+     */
+    protected void initializeModelCaches(OntModelAdapter source) {
+        schemaIndex.initialize(model, source.getSchemaIndex());
+        subgraphDigests.initialize(model, source.getSubgraphDigests());
+    }
+
     protected OntModel cloneOntModel() {
         OntModel ontModel = newOwlOntModel(namespace, isRdfsInferenceEnabled);
         ontModel.add(model);
@@ -216,12 +293,8 @@ public class OntModelAdapter {
     }
 
     public Collection<OntProperty> getPropertiesWithDomain(OntClass domain, boolean onlyInNamespace) {
-        // get all types, i.e. domain + superclasses(domain), consider also if the domain is part of a union
-        Collection<OntClass> domains = newHashSet(domain);
-        domains.addAll(getSuperclasses(domain, false, false));
-
-        Stream<OntProperty> ontPropertyStream = model.listOntProperties().toSet().stream()
-                .filter(ontProperty -> hasAnyAsDomain(ontProperty, domains));
+        // all types are considered, i.e. domain + superclasses(domain), also if the domain is part of a union
+        Stream<OntProperty> ontPropertyStream = getSchemaIndex().getPropertiesWithDomain(domain).stream();
 
         if (onlyInNamespace)
             ontPropertyStream = ontPropertyStream.filter(ontProperty -> namespace.equalsIgnoreCase(ontProperty.getNameSpace()));
@@ -561,14 +634,18 @@ public class OntModelAdapter {
     }
 
     public Optional<OntClass> getSingleRangeClass(OntProperty property, boolean onlyInNamespace) {
-        ExtendedIterator<OntClass> ranges = property.listRange()
-                .filterKeep(OntResource::isClass)
-                .mapWith(OntResource::asClass);
+        // properties of other models are read from their own model
+        Set<OntClass> rangesSet = getSchemaIndex().getRangeClasses(property)
+                .orElseGet(() -> property.listRange()
+                        .filterKeep(OntResource::isClass)
+                        .mapWith(OntResource::asClass)
+                        .toSet());
 
         if (onlyInNamespace)
-            ranges = ranges.filterKeep(resource -> resource.getNameSpace().equalsIgnoreCase(namespace));
+            rangesSet = rangesSet.stream()
+                    .filter(resource -> namespace.equalsIgnoreCase(resource.getNameSpace()))
+                    .collect(Collectors.toSet());
 
-        Set<OntClass> rangesSet = ranges.toSet();
         if (rangesSet.size() > 1)
             logger.error("Multiple range classes available for property {}: {}", property, rangesSet);
 
@@ -621,6 +698,23 @@ public class OntModelAdapter {
                 .ifPresent(Models::deepDeleteResource);
     }
 
+    /**
+     * Remove the resources and the subgraphs rooted in them, including the
+     * corresponding reified information, with a single removal from the model,
+     * see {@link Models#deepDeleteResources(Model, Collection)}
+     *
+     * @param resources
+     * @return the number of stored triples removed, inferred ones excluded
+     */
+    public int removeResources(Collection<? extends Resource> resources) {
+        List<Resource> resourcesInThisModel = resources.stream()
+                .map(this::getResourceInThisModel)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toList());
+        return Models.deepDeleteResources(model, resourcesInThisModel);
+    }
+
     /**
      * Remove the statement and the reified information from the model.
      * If the object resource is not used by any other statement in the model
@@ -804,12 +898,28 @@ public class OntModelAdapter {
     }
 
     public Set<Individual> deleteAllEmptyAnonIndividuals() {
-        Set<Individual> deletedIndividuals = new HashSet<>();
-        Set<Individual> anonIndividuals = getAllEmptyAnonIndividuals();
-        for (Individual anonIndiv : anonIndividuals) {
-            deletedIndividuals.addAll(deleteEmptyAnonIndividual(anonIndiv));
+        // the parents left with no property are found before removing anything, and removed together
+        Set<Individual> individualsToDelete = new HashSet<>(getAllEmptyAnonIndividuals());
+        Deque<Individual> pending = new ArrayDeque<>(individualsToDelete);
+        while (!pending.isEmpty()) {
+            getParentIndividualInCurrentGraph(pending.pop())
+                    .filter(parent -> !individualsToDelete.contains(parent))
+                    .filter(parent -> isEmptyAnonIndividualWithout(parent, individualsToDelete))
+                    .ifPresent(parent -> {
+                        individualsToDelete.add(parent);
+                        pending.push(parent);
+                    });
         }
-        return deletedIndividuals;
+        removeResources(individualsToDelete);
+        return individualsToDelete;
+    }
+
+    // whether the individual would be an empty anonymous individual once the other individuals are removed
+    private boolean isEmptyAnonIndividualWithout(Individual individual, Set<Individual> removedIndividuals) {
+        return individual.isAnon() && !individual.listProperties()
+                .filterKeep(statement -> statement.getPredicate().getNameSpace().equalsIgnoreCase(namespace))
+                .filterDrop(statement -> removedIndividuals.contains(statement.getObject()))
+                .hasNext();
     }
 
     public Set<Individual> getAllEmptyAnonIndividuals() {
@@ -824,6 +934,90 @@ public class OntModelAdapter {
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * Same as {@link #deleteEmptyAndUnreachableAnonIndividuals(Collection)}, with the named individuals of the classes
+     * of the namespace as roots
+     */
+    public Set<Individual> deleteEmptyAndUnreachableAnonIndividuals() {
+        List<Resource> namedIndividuals = model.getGraph().find(Node.ANY, RDF.Nodes.type, Node.ANY)
+                .filterKeep(triple -> triple.getSubject().isURI() && isInNamespace(triple.getObject()))
+                .mapWith(triple -> model.wrapAsResource(triple.getSubject()))
+                .toList();
+        return deleteEmptyAndUnreachableAnonIndividuals(namedIndividuals);
+    }
+
+    /**
+     * Deletes at once the anonymous individuals of the classes of the namespace that cannot be reached from the roots
+     * through any statement, the empty ones, see {@link #isEmptyAnonIndividual(Individual)}, and the ones left empty
+     * by deleting them, with their subgraphs and reified statements, see {@link #removeResources(Collection)}.
+     * The statements reachable from the roots are visited once to mark the reachable individuals, and the statements
+     * of each anonymous individual once to count its properties, so that the time is linear in the size of the graph.
+     *
+     * @param roots e.g. the policies and the benefit rules
+     * @return the deleted individuals
+     */
+    public Set<Individual> deleteEmptyAndUnreachableAnonIndividuals(Collection<? extends Resource> roots) {
+        Graph graph = model.getGraph();
+
+        // mark: the subjects of the statements reachable from the roots, reified statements included
+        List<Node> rootNodes = roots.stream()
+                .map(Resource::asNode)
+                .collect(Collectors.toList());
+        Set<Node> reachableNodes = SubgraphExtractor.extractTriples(graph, rootNodes, SubgraphExtractor.STOP_AT_REIFIED_STATEMENT_SOURCE.asTripleBoundary(model), true, false)
+                .stream()
+                .map(Triple::getSubject)
+                .collect(Collectors.toSet());
+
+        // sweep: the unreachable and empty anonymous individuals, and the ones left with no property without them
+        Map<Node, Integer> numberOfPropertiesByAnonIndividual = new HashMap<>();
+        graph.find(Node.ANY, RDF.Nodes.type, Node.ANY)
+                .filterKeep(triple -> triple.getSubject().isBlank() && isInNamespace(triple.getObject()))
+                .forEachRemaining(triple -> numberOfPropertiesByAnonIndividual.computeIfAbsent(triple.getSubject(), individual -> countPropertiesInNamespace(graph, individual)));
+        Set<Node> nodesToDelete = new HashSet<>();
+        Deque<Node> pending = new ArrayDeque<>();
+        numberOfPropertiesByAnonIndividual.forEach((individual, numberOfProperties) -> {
+            if (numberOfProperties == 0 || !reachableNodes.contains(individual)) {
+                nodesToDelete.add(individual);
+                pending.add(individual);
+            }
+        });
+        while (!pending.isEmpty()) {
+            for (Node parent : getSubjectsWithPropertyInNamespace(graph, pending.pop())) {
+                Integer numberOfProperties = numberOfPropertiesByAnonIndividual.computeIfPresent(parent, (individual, number) -> number - 1);
+                if (numberOfProperties != null && numberOfProperties == 0 && nodesToDelete.add(parent)) pending.add(parent);
+            }
+        }
+
+        Set<Individual> individualsToDelete = nodesToDelete.stream()
+                .map(model::wrapAsResource)
+                .filter(resource -> resource.canAs(Individual.class))
+                .map(resource -> resource.as(Individual.class))
+                .collect(Collectors.toSet());
+        int numberOfTriples = removeResources(individualsToDelete);
+        logger.debug("Deleted {} empty or unreachable anonymous individuals, {} triples", individualsToDelete.size(), numberOfTriples);
+        return individualsToDelete;
+    }
+
+    private int countPropertiesInNamespace(Graph graph, Node subject) {
+        ExtendedIterator<Triple> triples = graph.find(subject, Node.ANY, Node.ANY);
+        try {
+            int count = 0;
+            while (triples.hasNext())
+                if (isInNamespace(triples.next().getPredicate())) count++;
+            return count;
+        } finally {
+            triples.close();
+        }
+    }
+
+    // one subject for each statement, so that a subject with more statements with the object is repeated
+    private List<Node> getSubjectsWithPropertyInNamespace(Graph graph, Node object) {
+        return graph.find(Node.ANY, Node.ANY, object)
+                .filterKeep(triple -> isInNamespace(triple.getPredicate()))
+                .mapWith(Triple::getSubject)
+                .toList();
+    }
+
     public Map<OntClass, Set<Individual>> getAllAnonIndividualsPerClass() {
         return this.model.listClasses()
                 .filterKeep(this::isInNamespace)
@@ -850,6 +1044,11 @@ public class OntModelAdapter {
         return namespace.equals(resource.getNameSpace());
     }
 
+    // as getAllEmptyAnonIndividuals, ignoring the case
+    private boolean isInNamespace(Node node) {
+        return node.isURI() && namespace.equalsIgnoreCase(node.getNameSpace());
+    }
+
     public boolean isIndividual(String resourceUri) {
         // We can not use the method RDFNode.canAs(Class<T>) because it's
         // returning true for Individual also when the uri resource is a class or a datatype
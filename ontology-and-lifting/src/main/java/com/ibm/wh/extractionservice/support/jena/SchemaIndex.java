@@ -0,0 +1,178 @@
+package com.ibm.wh.extractionservice.support.jena;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jena.ontology.OntClass;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntProperty;
+import org.apache.jena.ontology.OntResource;
+import org.apache.jena.ontology.UnionClass;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+/**
+ * Domains, ranges and domain-range subgraphs of the properties of a model, read once from the model so that they can
+ * be queried without walking the properties and the class hierarchy at every call.
+ * <p>
+ * An index reflects the model at the time it has been built, see {@link OntModelAdapter#getSchemaIndex()}.
+ * Subgraphs are computed on first request and then kept in the index. Instances are thread-safe.
+ */
+public final class SchemaIndex {
+
+    private static final Set<Property> SCHEMA_PROPERTIES = new HashSet<>(Arrays.asList(
+            RDFS.domain, RDFS.range, RDFS.subClassOf, RDFS.subPropertyOf,
+            OWL.unionOf, OWL.equivalentClass, OWL.equivalentProperty, RDF.first, RDF.rest));
+    private static final Set<String> SCHEMA_NAMESPACES = new HashSet<>(Arrays.asList(
+            RDF.getURI(), RDFS.getURI(), OWL.getURI()));
+
+    private final String namespace;
+    // properties by each class that is a domain of theirs, an operand of a union domain, or a subclass of one of those
+    private final Map<Resource, Set<OntProperty>> propertiesByDomain;
+    private final Map<Resource, Set<OntClass>> rangeClassesByProperty;
+    private final Map<Resource, Subgraph> subgraphsByClass = new ConcurrentHashMap<>();
+
+    private SchemaIndex(String namespace, Map<Resource, Set<OntProperty>> propertiesByDomain, Map<Resource, Set<OntClass>> rangeClassesByProperty) {
+        this.namespace = namespace;
+        this.propertiesByDomain = propertiesByDomain;
+        this.rangeClassesByProperty = rangeClassesByProperty;
+    }
+
+    static SchemaIndex build(OntModel model, String namespace) {
+        Map<Resource, Set<OntProperty>> propertiesByDirectDomain = new HashMap<>();
+        Map<Resource, Set<OntClass>> rangeClassesByProperty = new HashMap<>();
+        for (OntProperty property : model.listOntProperties().toSet()) {
+            property.listDomain()
+                    .filterKeep(resource -> resource.canAs(OntClass.class))
+                    .mapWith(resource -> resource.as(OntClass.class))
+                    .toSet()
+                    .forEach(domain -> {
+                        addTo(propertiesByDirectDomain, domain, property);
+                        if (domain.canAs(UnionClass.class))
+                            domain.asUnionClass().listOperands().toSet().stream()
+                                    .filter(operand -> operand.canAs(OntClass.class))
+                                    .forEach(operand -> addTo(propertiesByDirectDomain, operand.as(OntClass.class), property));
+                    });
+            Set<OntClass> rangeClasses = property.listRange()
+                    .filterKeep(OntResource::isClass)
+                    .mapWith(OntResource::asClass)
+                    .toSet();
+            rangeClassesByProperty.put(property, Collections.unmodifiableSet(rangeClasses));
+        }
+
+        // a class gets the properties of its superclasses
+        Map<Resource, Set<OntProperty>> propertiesByDomain = new HashMap<>();
+        propertiesByDirectDomain.forEach((domain, properties) -> {
+            propertiesByDomain.computeIfAbsent(domain, key -> new HashSet<>()).addAll(properties);
+            if (domain.isAnon()) return;
+            domain.as(OntClass.class).listSubClasses(false).toSet()
+                    .forEach(subclass -> propertiesByDomain.computeIfAbsent(subclass, key -> new HashSet<>()).addAll(properties));
+        });
+        propertiesByDomain.replaceAll((domain, properties) -> Collections.unmodifiableSet(properties));
+
+        return new SchemaIndex(namespace, propertiesByDomain, rangeClassesByProperty);
+    }
+
+    /**
+     * Whether adding or removing the statement may change an index of the model
+     */
+    public static boolean isSchemaStatement(Statement statement) {
+        if (SCHEMA_PROPERTIES.contains(statement.getPredicate())) return true;
+        // types of individuals are not part of the schema
+        RDFNode object = statement.getObject();
+        return statement.getPredicate().equals(RDF.type) && object.isURIResource() && SCHEMA_NAMESPACES.contains(object.asResource().getNameSpace());
+    }
+
+    /**
+     * @return the properties having as domain the class or any of its superclasses, also as operand of a union
+     */
+    public Set<OntProperty> getPropertiesWithDomain(Resource domain) {
+        return propertiesByDomain.getOrDefault(domain, Collections.emptySet());
+    }
+
+    /**
+     * @return the ranges of the property that are classes, or empty if the property is not part of the model
+     */
+    public Optional<Set<OntClass>> getRangeClasses(Resource property) {
+        return Optional.ofNullable(rangeClassesByProperty.get(property));
+    }
+
+    /**
+     * @return the classes reachable from the class through the properties having them as domain and their single
+     * range class in the namespace, the class included
+     */
+    public Set<OntClass> getClassesConnectedWithClass(OntClass ontClass) {
+        return getSubgraph(ontClass).classes;
+    }
+
+    /**
+     * @return the properties having as domain any of the classes returned by {@link #getClassesConnectedWithClass(OntClass)}
+     */
+    public Set<OntProperty> getPropertiesConnectedWithClass(OntClass ontClass) {
+        return getSubgraph(ontClass).properties;
+    }
+
+    private Subgraph getSubgraph(OntClass ontClass) {
+        Subgraph subgraph = subgraphsByClass.get(ontClass);
+        if (subgraph != null) return subgraph;
+        subgraph = computeSubgraph(ontClass);
+        Subgraph previous = subgraphsByClass.putIfAbsent(ontClass, subgraph);
+        return previous == null ? subgraph : previous;
+    }
+
+    private Subgraph computeSubgraph(OntClass ontClass) {
+        Queue<OntClass> open = new LinkedList<>();
+        open.add(ontClass);
+        Set<OntClass> visited = new HashSet<>();
+        Set<OntProperty> properties = new HashSet<>();
+        while (!open.isEmpty()) {
+            OntClass currentDomain = open.poll();
+            if (!visited.add(currentDomain)) continue;
+            Set<OntProperty> propertiesWithDomain = getPropertiesWithDomain(currentDomain);
+            properties.addAll(propertiesWithDomain);
+            propertiesWithDomain.stream()
+                    .map(this::getSingleRangeClassInNamespace)
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .filter(rangeClass -> !visited.contains(rangeClass))
+                    .forEach(open::add);
+        }
+        return new Subgraph(Collections.unmodifiableSet(visited), Collections.unmodifiableSet(properties));
+    }
+
+    private Optional<OntClass> getSingleRangeClassInNamespace(OntProperty property) {
+        return getRangeClasses(property).orElse(Collections.emptySet()).stream()
+                .filter(rangeClass -> namespace.equalsIgnoreCase(rangeClass.getNameSpace()))
+                .findFirst();
+    }
+
+    private static <V> void addTo(Map<Resource, Set<V>> map, Resource key, V value) {
+        map.computeIfAbsent(key, k -> new HashSet<>()).add(value);
+    }
+
+    private static class Subgraph {
+
+        private final Set<OntClass> classes;
+        private final Set<OntProperty> properties;
+
+        Subgraph(Set<OntClass> classes, Set<OntProperty> properties) {
+            this.classes = classes;
+            this.properties = properties;
+        }
+
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.ibm.wh.extractionservice.support.jena;
+
+/**
+ * A 128-bit digest of a subgraph, equal for isomorphic subgraphs, see {@link SubgraphDigests}
+ */
+public final class SubgraphDigest implements Comparable<SubgraphDigest> {
+
+    private final long high;
+    private final long low;
+
+    SubgraphDigest(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    @Override
+    public int compareTo(SubgraphDigest other) {
+        int compareHigh = Long.compareUnsigned(high, other.high);
+        return compareHigh != 0 ? compareHigh : Long.compareUnsigned(low, other.low);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SubgraphDigest that = (SubgraphDigest) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high * 31 + low);
+    }
+
+    /**
+     * @return the digest as 32 hexadecimal digits
+     */
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+
+}
@@ -0,0 +1,293 @@
+package com.ibm.wh.extractionservice.support.jena;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.TripleBoundary;
+import org.apache.jena.reasoner.InfGraph;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Canonical digests of the subgraphs of a graph, see {@link SubgraphExtractor}: isomorphic subgraphs, that only differ
+ * in the labels of their blank nodes, have the same digest, and different subgraphs have different digests with
+ * overwhelming probability. The root of a subgraph is compared by its position and not by its label, so that e.g. two
+ * benefit rules with different URIs and the same conditions have the same digest.
+ * <p>
+ * Blank nodes, and the root, are coloured by iterative colour refinement: the colour of a node is hashed with the
+ * multiset of the predicates and colours of its neighbours until the partition of the nodes by colour is stable. When
+ * the blank nodes are linked to each other as a forest, as the anonymous individuals of benefit rules are, the stable
+ * colours identify the subgraph up to isomorphism. Otherwise nodes sharing a colour are told apart one at a time, and
+ * the smallest of the resulting digests is kept. Digests are computed once per root and kept in the instance, that
+ * reflects the graph at the time it has been created, see {@link OntModelAdapter#getSubgraphDigests()}. Instances are
+ * thread-safe.
+ */
+public final class SubgraphDigests {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+    private static final long ROOT = 0x526f6f74L;
+    private static final long BLANK = 0x426c616e6bL;
+    private static final long OUTGOING = 1;
+    private static final long INCOMING = 2;
+    private static final long DISTINGUISHED = 3;
+
+    private final Graph graph;
+    private final TripleBoundary boundary;
+    private final Map<Node, SubgraphDigest> digestsByRoot = new ConcurrentHashMap<>();
+
+    public SubgraphDigests(Graph graph, TripleBoundary boundary) {
+        this.graph = graph;
+        this.boundary = boundary;
+    }
+
+    /**
+     * @return the digest of the subgraph of the root, reified statements excluded
+     */
+    public SubgraphDigest digest(Node root) {
+        SubgraphDigest digest = digestsByRoot.get(root);
+        if (digest != null) return digest;
+        digest = digest(SubgraphExtractor.extractTriples(graph, root, boundary, false), root);
+        SubgraphDigest previous = digestsByRoot.putIfAbsent(root, digest);
+        return previous == null ? digest : previous;
+    }
+
+    /**
+     * Computes the digests of the roots in parallel, e.g. to find the duplicates among many benefit rules. The graph
+     * must not change meanwhile.
+     *
+     * @return the digest of each root, in the same order of the roots
+     */
+    public Map<Node, SubgraphDigest> digestAll(Collection<Node> roots) {
+        // inference graphs compute their derivations on first access, which must not happen concurrently
+        if (graph instanceof InfGraph) ((InfGraph) graph).prepare();
+        Map<Node, SubgraphDigest> computed = roots.parallelStream()
+                .distinct()
+                .collect(Collectors.toConcurrentMap(root -> root, this::digest));
+        Map<Node, SubgraphDigest> digests = new LinkedHashMap<>();
+        roots.forEach(root -> digests.put(root, computed.get(root)));
+        return digests;
+    }
+
+    /**
+     * @return the digest of the triples, as a subgraph of the root
+     */
+    public static SubgraphDigest digest(Collection<Triple> triples, Node root) {
+        if (root.isLiteral()) {
+            long[] hash = termHash(root);
+            return new SubgraphDigest(hash[0], hash[1]);
+        }
+        return new Canonicalisation(triples, root).digest();
+    }
+
+    private static long[] termHash(Node node) {
+        Hasher hasher = HASH.newHasher();
+        if (node.isURI()) {
+            hasher.putByte((byte) 'U').putString(node.getURI(), StandardCharsets.UTF_8);
+        } else if (node.isLiteral()) {
+            hasher.putByte((byte) 'L').putString(node.getLiteralLexicalForm(), StandardCharsets.UTF_8)
+                    .putByte((byte) 0).putString(node.getLiteralDatatypeURI() == null ? "" : node.getLiteralDatatypeURI(), StandardCharsets.UTF_8)
+                    .putByte((byte) 0).putString(node.getLiteralLanguage(), StandardCharsets.UTF_8);
+        } else {
+            // variables and other nodes that are not RDF terms
+            hasher.putByte((byte) 'O').putString(node.toString(), StandardCharsets.UTF_8);
+        }
+        return toLongs(hasher.hash().asBytes());
+    }
+
+    private static long[] hash(long... values) {
+        Hasher hasher = HASH.newHasher();
+        for (long value : values) hasher.putLong(value);
+        return toLongs(hasher.hash().asBytes());
+    }
+
+    private static long[] toLongs(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        return new long[]{buffer.getLong(0), buffer.getLong(8)};
+    }
+
+    /**
+     * The triples of a subgraph with their blank nodes, and the root, numbered from 0, the root first
+     */
+    private static class Canonicalisation {
+
+        private final int numberOfNodes;
+        // for each triple: the number of its subject and object, or -1 for other terms, and the hashes of the terms
+        private final int[] subjects;
+        private final int[] objects;
+        private final long[][] subjectHashes;
+        private final long[][] predicateHashes;
+        private final long[][] objectHashes;
+        // whether the triples linking blank nodes to each other form a forest
+        private final boolean forest;
+
+        Canonicalisation(Collection<Triple> triples, Node root) {
+            Map<Node, Integer> numbers = new HashMap<>();
+            numbers.put(root, 0);
+            Map<Node, long[]> termHashes = new HashMap<>();
+            int size = triples.size();
+            subjects = new int[size];
+            objects = new int[size];
+            subjectHashes = new long[size][];
+            predicateHashes = new long[size][];
+            objectHashes = new long[size][];
+            int i = 0;
+            for (Triple triple : triples) {
+                subjects[i] = number(triple.getSubject(), numbers);
+                objects[i] = number(triple.getObject(), numbers);
+                if (subjects[i] < 0) subjectHashes[i] = termHashes.computeIfAbsent(triple.getSubject(), SubgraphDigests::termHash);
+                predicateHashes[i] = termHashes.computeIfAbsent(triple.getPredicate(), SubgraphDigests::termHash);
+                if (objects[i] < 0) objectHashes[i] = termHashes.computeIfAbsent(triple.getObject(), SubgraphDigests::termHash);
+                i++;
+            }
+            numberOfNodes = numbers.size();
+            forest = isForest();
+        }
+
+        private static int number(Node node, Map<Node, Integer> numbers) {
+            Integer number = numbers.get(node);
+            if (number != null) return number;
+            if (!node.isBlank()) return -1;
+            numbers.put(node, numbers.size());
+            return numbers.size() - 1;
+        }
+
+        private boolean isForest() {
+            int[] parents = new int[numberOfNodes];
+            for (int node = 0; node < numberOfNodes; node++) parents[node] = node;
+            for (int i = 0; i < subjects.length; i++) {
+                if (subjects[i] < 0 || objects[i] < 0) continue;
+                int subjectRoot = find(parents, subjects[i]);
+                int objectRoot = find(parents, objects[i]);
+                // also self loops and more triples between the same nodes
+                if (subjectRoot == objectRoot) return false;
+                parents[subjectRoot] = objectRoot;
+            }
+            return true;
+        }
+
+        private static int find(int[] parents, int node) {
+            while (parents[node] != node) {
+                parents[node] = parents[parents[node]];
+                node = parents[node];
+            }
+            return node;
+        }
+
+        SubgraphDigest digest() {
+            long[][] colours = new long[numberOfNodes][];
+            colours[0] = hash(ROOT);
+            for (int node = 1; node < numberOfNodes; node++) colours[node] = hash(BLANK);
+            long[] digest = canonicalDigest(colours);
+            return new SubgraphDigest(digest[0], digest[1]);
+        }
+
+        private long[] canonicalDigest(long[][] initialColours) {
+            long[][] colours = refine(initialColours);
+            List<Integer> tied = firstTiedNodes(colours);
+            if (tied.isEmpty() || forest) return graphDigest(colours);
+
+            // tells apart each of the nodes sharing the colour in turn, keeping the smallest digest
+            long[] smallest = null;
+            for (int node : tied) {
+                long[][] distinguished = colours.clone();
+                distinguished[node] = hash(colours[node][0], colours[node][1], DISTINGUISHED);
+                long[] digest = canonicalDigest(distinguished);
+                if (smallest == null || compare(digest, smallest) < 0) smallest = digest;
+            }
+            return smallest;
+        }
+
+        private long[][] refine(long[][] colours) {
+            int classes = countClasses(colours);
+            for (int round = 0; round < numberOfNodes; round++) {
+                // the multiset of the neighbourhood of each node, as the sum of the hashes of its edges
+                long[][] sums = new long[numberOfNodes][2];
+                for (int i = 0; i < subjects.length; i++) {
+                    long[] predicate = predicateHashes[i];
+                    if (subjects[i] >= 0) {
+                        long[] object = objectColour(colours, i);
+                        add(sums[subjects[i]], hash(OUTGOING, predicate[0], predicate[1], object[0], object[1]));
+                    }
+                    if (objects[i] >= 0) {
+                        long[] subject = subjectColour(colours, i);
+                        add(sums[objects[i]], hash(INCOMING, predicate[0], predicate[1], subject[0], subject[1]));
+                    }
+                }
+                long[][] refined = new long[numberOfNodes][];
+                for (int node = 0; node < numberOfNodes; node++)
+                    refined[node] = hash(colours[node][0], colours[node][1], sums[node][0], sums[node][1]);
+                int refinedClasses = countClasses(refined);
+                colours = refined;
+                if (refinedClasses == classes) break;
+                classes = refinedClasses;
+            }
+            return colours;
+        }
+
+        private long[] graphDigest(long[][] colours) {
+            long[] sum = new long[2];
+            for (int i = 0; i < subjects.length; i++) {
+                long[] subject = subjectColour(colours, i);
+                long[] object = objectColour(colours, i);
+                add(sum, hash(subject[0], subject[1], predicateHashes[i][0], predicateHashes[i][1], object[0], object[1]));
+            }
+            return hash(colours[0][0], colours[0][1], sum[0], sum[1]);
+        }
+
+        // the nodes of the smallest colour shared by more nodes, empty if all the colours are different
+        private List<Integer> firstTiedNodes(long[][] colours) {
+            Map<List<Long>, List<Integer>> nodesByColour = new HashMap<>();
+            for (int node = 0; node < numberOfNodes; node++)
+                nodesByColour.computeIfAbsent(Arrays.asList(colours[node][0], colours[node][1]), colour -> new ArrayList<>()).add(node);
+            return nodesByColour.values().stream()
+                    .filter(nodes -> nodes.size() > 1)
+                    .min((some, others) -> compare(colours[some.get(0)], colours[others.get(0)]))
+                    .orElse(Collections.emptyList());
+        }
+
+        private int countClasses(long[][] colours) {
+            Set<List<Long>> distinct = new HashSet<>();
+            for (long[] colour : colours) distinct.add(Arrays.asList(colour[0], colour[1]));
+            return distinct.size();
+        }
+
+        private long[] subjectColour(long[][] colours, int triple) {
+            return subjects[triple] >= 0 ? colours[subjects[triple]] : subjectHashes[triple];
+        }
+
+        private long[] objectColour(long[][] colours, int triple) {
+            return objects[triple] >= 0 ? colours[objects[triple]] : objectHashes[triple];
+        }
+
+        // sums are commutative, so that the order of the triples does not matter
+        private static void add(long[] sum, long[] hash) {
+            sum[0] += hash[0];
+            sum[1] += hash[1];
+        }
+
+        private static int compare(long[] some, long[] others) {
+            int compareHigh = Long.compareUnsigned(some[0], others[0]);
+            return compareHigh != 0 ? compareHigh : Long.compareUnsigned(some[1], others[1]);
+        }
+
+    }
+
+}
@@ -1,23 +1,41 @@
 package com.ibm.wh.extractionservice.support.jena;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.graph.TripleBoundary;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
-import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StatementBoundary;
 import org.apache.jena.rdf.model.StatementTripleBoundary;
+import org.apache.jena.reasoner.InfGraph;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
 import org.apache.jena.vocabulary.RDF;
 
+/**
+ * Extracts the subgraph reachable from one or more root nodes: the triples having as subject a root, and recursively
+ * the triples having as subject the predicates and objects of the triples already extracted, unless the boundary
+ * stops at them. Reified statements of the extracted triples can be extracted as well.
+ * <p>
+ * The extraction works on the {@link Graph} of the models, one {@link Graph#find(Node, Node, Node)} per visited node,
+ * and returns the extracted triples, that can be copied into a new model when needed.
+ */
 public class SubgraphExtractor {
 
     /**
@@ -30,9 +48,9 @@ public class SubgraphExtractor {
      * of the reified statement
      */
     public static final StatementBoundary STOP_AT_REIFIED_STATEMENT_SOURCE = new StatementTripleBoundary(
-            triple -> triple.getPredicate().getURI().equals(RDF.subject.getURI())
-                    || triple.getPredicate().getURI().equals(RDF.predicate.getURI())
-                    || triple.getPredicate().getURI().equals(RDF.object.getURI()));
+            triple -> triple.getPredicate().equals(RDF.Nodes.subject)
+                    || triple.getPredicate().equals(RDF.Nodes.predicate)
+                    || triple.getPredicate().equals(RDF.Nodes.object));
 
     private SubgraphExtractor() { }
 
@@ -45,66 +63,113 @@ public class SubgraphExtractor {
     }
 
     public static Model extract(Model model, Resource rootResource, StatementBoundary boundary, boolean includeReified) {
-        Model newModel = ModelFactory.createDefaultModel();
-        Queue<Resource> open = new LinkedList<>();
-        open.add(rootResource);
-
-        Set<String> visited = new HashSet<>();
-        visited.add(getIdentifier(rootResource));
-
-        while (!open.isEmpty()) {
-            Resource current = open.poll();
-            List<Statement> statements = model.listStatements(current, null, (RDFNode) null).toList();
-
-            for (Statement statement : statements) {
-                newModel.add(statement);
-
-                if (includeReified && statement.isReified()) {
-                    // add all reified statements as resources to be processed
-                    model.listReifiedStatements(statement).toList()
-                            .stream()
-                            .filter(res -> !visited.contains(getIdentifier(res)))
-                            .forEachOrdered(res -> {
-                                visited.add(getIdentifier(res));
-                                open.add(res);
-                            });
-                }
-
-                if (!boundary.stopAt(statement)) {
-                    // visit also properties to include the definition of the properties
-                    if (statement.getPredicate().isResource()) {
-                        Resource predicateResource = statement.getPredicate().asResource();
-                        if (!visited.contains(getIdentifier(predicateResource))) {
-                            visited.add(getIdentifier(predicateResource));
-                            open.add(predicateResource);
-                        }
-                    }
-
-                    if (statement.getObject().isResource()) {
-                        Resource objectResource = statement.getObject().asResource();
-                        if (!visited.contains(getIdentifier(objectResource))) {
-                            visited.add(getIdentifier(objectResource));
-                            open.add(objectResource);
-                        }
-                    }
-                }
-            }
+        return toModel(extractTriples(model.getGraph(), rootResource.asNode(), boundary.asTripleBoundary(model), includeReified));
+    }
+
+    public static Model extract(Resource rootResource, boolean includeReified) {
+        return extract(rootResource.getModel(), rootResource, STOP_AT_REIFIED_STATEMENT_SOURCE, includeReified);
+    }
+
+    public static Model extract(Resource rootResource, StatementBoundary boundary, boolean includeReified) {
+        return extract(rootResource.getModel(), rootResource, boundary, includeReified);
+    }
 
+    /**
+     * Same as {@link #extract(Model, Resource, StatementBoundary, boolean)}, without copying the triples into a model
+     *
+     * @return the triples of the subgraph, each once, in the order they are reached
+     */
+    public static List<Triple> extractTriples(Graph graph, Node root, TripleBoundary boundary, boolean includeReified) {
+        return extractTriples(graph, Collections.singleton(root), boundary, includeReified, false);
+    }
+
+    /**
+     * Extracts the union of the subgraphs of the roots in a single visit, so that the nodes reachable from more roots
+     * are visited once.
+     *
+     * @param parallel whether the nodes at the same distance from the roots are visited in parallel, for large
+     *                 subgraphs. The graph must not change during the extraction, and the triples are not returned in
+     *                 a deterministic order.
+     * @return the triples of the subgraphs, each once
+     */
+    public static List<Triple> extractTriples(Graph graph, Collection<Node> roots, TripleBoundary boundary, boolean includeReified, boolean parallel) {
+        // inference graphs compute their derivations on first access, which must not happen concurrently
+        if (parallel && graph instanceof InfGraph) ((InfGraph) graph).prepare();
+
+        Set<Node> visited = parallel ? ConcurrentHashMap.newKeySet() : new HashSet<>();
+        List<Node> frontier = roots.stream()
+                .filter(visited::add)
+                .collect(Collectors.toList());
+        List<Triple> triples = new ArrayList<>();
+        while (!frontier.isEmpty()) {
+            Stream<Node> nodes = parallel ? frontier.parallelStream() : frontier.stream();
+            List<Visit> visits = nodes
+                    .map(node -> visit(graph, node, boundary, includeReified, visited))
+                    .collect(Collectors.toList());
+            frontier = new ArrayList<>();
+            for (Visit visit : visits) {
+                triples.addAll(visit.triples);
+                frontier.addAll(visit.reached);
+            }
         }
+        return triples;
+    }
 
-        return newModel;
+    private static Visit visit(Graph graph, Node node, TripleBoundary boundary, boolean includeReified, Set<Node> visited) {
+        Visit visit = new Visit();
+        Map<Triple, List<Node>> reifiersByTriple = includeReified ? getReifiersOfTriplesWithSubject(graph, node) : Collections.emptyMap();
+        ExtendedIterator<Triple> iterator = graph.find(node, Node.ANY, Node.ANY);
+        try {
+            while (iterator.hasNext()) {
+                Triple triple = iterator.next();
+                visit.triples.add(triple);
+
+                // add all reified statements as nodes to be visited
+                for (Node reifier : reifiersByTriple.getOrDefault(triple, Collections.emptyList()))
+                    if (visited.add(reifier)) visit.reached.add(reifier);
+
+                if (boundary.stopAt(triple)) continue;
+                // visit also properties to include the definition of the properties
+                if (visited.add(triple.getPredicate())) visit.reached.add(triple.getPredicate());
+                Node object = triple.getObject();
+                if (!object.isLiteral() && visited.add(object)) visit.reached.add(object);
+            }
+        } finally {
+            iterator.close();
+        }
+        return visit;
     }
 
-    private static String getIdentifier(Resource resource) {
-        return resource.isAnon() ? resource.getId().toString() : resource.getURI();
+    // the nodes reifying the triples having the node as subject, with a single lookup for all the triples
+    private static Map<Triple, List<Node>> getReifiersOfTriplesWithSubject(Graph graph, Node subject) {
+        List<Node> reifiers = graph.find(Node.ANY, RDF.Nodes.subject, subject).mapWith(Triple::getSubject).toList();
+        if (reifiers.isEmpty()) return Collections.emptyMap();
+        Map<Triple, List<Node>> reifiersByTriple = new HashMap<>();
+        for (Node reifier : reifiers) {
+            List<Node> predicates = graph.find(reifier, RDF.Nodes.predicate, Node.ANY).mapWith(Triple::getObject).toList();
+            List<Node> objects = graph.find(reifier, RDF.Nodes.object, Node.ANY).mapWith(Triple::getObject).toList();
+            // a reification, as Jena reads it, has a single predicate and a single object
+            if (predicates.size() != 1 || objects.size() != 1) continue;
+            reifiersByTriple.computeIfAbsent(Triple.create(subject, predicates.get(0), objects.get(0)), triple -> new ArrayList<>()).add(reifier);
+        }
+        return reifiersByTriple;
     }
 
-    public static Model extract(Resource rootResource, boolean includeReified) {
-        return extract(rootResource.getModel(), rootResource, STOP_AT_REIFIED_STATEMENT_SOURCE, includeReified);
+    /**
+     * @return a new default model with the triples
+     */
+    public static Model toModel(List<Triple> triples) {
+        Graph graph = GraphFactory.createDefaultGraph();
+        GraphUtil.add(graph, triples);
+        return ModelFactory.createModelForGraph(graph);
     }
 
-    public static Model extract(Resource rootResource, StatementBoundary boundary, boolean includeReified) {
-        return extract(rootResource.getModel(), rootResource, STOP_AT_REIFIED_STATEMENT_SOURCE, includeReified);
+    private static class Visit {
+
+        private final List<Triple> triples = new ArrayList<>();
+        // the nodes visited for the first time through the triples
+        private final List<Node> reached = new ArrayList<>();
+
     }
 
 }
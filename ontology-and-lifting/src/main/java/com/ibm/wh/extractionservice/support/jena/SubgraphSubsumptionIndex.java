@@ -0,0 +1,262 @@
+package com.ibm.wh.extractionservice.support.jena;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Finds, among many stored roots such as benefit rules, those whose subgraph contains the subgraph of another root,
+ * with the same notion of containment of {@link Models#isSubgraph(org.apache.jena.rdf.model.Resource, org.apache.jena.rdf.model.Resource)}:
+ * the statements of the contained root are statements of the containing one, and its anonymous objects are contained
+ * in the single anonymous object of the containing root with the same property, recursively. Roots with isomorphic
+ * subgraphs, see {@link SubgraphDigests}, contain each other.
+ * <p>
+ * The subgraph of each root, its statements and recursively those of its anonymous objects, is read once when the
+ * index is built. Each statement is a feature, identified by the properties leading to its subject from the root, and
+ * so is each property, and a root can only be contained by the roots having all its features: the candidates are
+ * found intersecting the lists of the roots having each feature, starting from the shortest, and only they are
+ * checked for containment. The containment of subgraphs with the same digests, such as the many anonymous conditions
+ * shared by benefit rules, is checked once per lookup. Instances are immutable and can be shared among threads.
+ */
+public final class SubgraphSubsumptionIndex {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+    private static final long ROOT_PATH = 0;
+
+    private final List<Node> roots;
+    private final List<Tree> trees;
+    // sorted numbers of the roots having each feature
+    private final Map<Long, int[]> rootsByFeature;
+    private final Map<SubgraphDigest, List<Integer>> rootsByDigest;
+
+    private SubgraphSubsumptionIndex(List<Node> roots, List<Tree> trees, Map<Long, int[]> rootsByFeature, Map<SubgraphDigest, List<Integer>> rootsByDigest) {
+        this.roots = roots;
+        this.trees = trees;
+        this.rootsByFeature = rootsByFeature;
+        this.rootsByDigest = rootsByDigest;
+    }
+
+    public static SubgraphSubsumptionIndex build(Graph graph, Collection<Node> roots) {
+        List<Node> distinctRoots = roots.stream().distinct().collect(Collectors.toList());
+        List<Tree> trees = new ArrayList<>(distinctRoots.size());
+        Map<Long, List<Integer>> rootListsByFeature = new HashMap<>();
+        Map<SubgraphDigest, List<Integer>> rootsByDigest = new HashMap<>();
+        for (int number = 0; number < distinctRoots.size(); number++) {
+            Tree tree = Tree.read(graph, distinctRoots.get(number));
+            trees.add(tree);
+            for (long feature : tree.features) rootListsByFeature.computeIfAbsent(feature, key -> new ArrayList<>()).add(number);
+            rootsByDigest.computeIfAbsent(tree.digest, key -> new ArrayList<>()).add(number);
+        }
+        Map<Long, int[]> rootsByFeature = new HashMap<>(rootListsByFeature.size() * 2);
+        rootListsByFeature.forEach((feature, numbers) -> rootsByFeature.put(feature, numbers.stream().mapToInt(Integer::intValue).toArray()));
+        return new SubgraphSubsumptionIndex(Collections.unmodifiableList(distinctRoots), trees, rootsByFeature, rootsByDigest);
+    }
+
+    public int size() {
+        return roots.size();
+    }
+
+    /**
+     * @param graph the graph of the root, not necessarily the graph of the index
+     * @return the stored roots whose subgraph contains the subgraph of the root, i.e. those that the root subsumes,
+     * duplicates included, the root excluded
+     */
+    public List<Node> findSubsumed(Graph graph, Node root) {
+        return findSubsumed(Tree.read(graph, root), root);
+    }
+
+    /**
+     * @param graph the graph of the root, not necessarily the graph of the index
+     * @return the stored roots with a subgraph isomorphic to the subgraph of the root, the root excluded
+     */
+    public List<Node> findDuplicates(Graph graph, Node root) {
+        return rootsByDigest.getOrDefault(Tree.read(graph, root).digest, Collections.emptyList()).stream()
+                .map(roots::get)
+                .filter(stored -> !stored.equals(root))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return for each stored root that subsumes others, the roots it subsumes, duplicates included
+     */
+    public Map<Node, List<Node>> findAllSubsumed() {
+        Map<Node, List<Node>> subsumed = new LinkedHashMap<>();
+        for (int number = 0; number < roots.size(); number++) {
+            List<Node> found = findSubsumed(trees.get(number), roots.get(number));
+            if (!found.isEmpty()) subsumed.put(roots.get(number), found);
+        }
+        return subsumed;
+    }
+
+    private List<Node> findSubsumed(Tree tree, Node root) {
+        List<Node> subsumed = new ArrayList<>();
+        Map<DigestPair, Boolean> containment = new HashMap<>();
+        for (int candidate : findCandidates(tree)) {
+            Node stored = roots.get(candidate);
+            if (!stored.equals(root) && tree.isContainedIn(trees.get(candidate), containment)) subsumed.add(stored);
+        }
+        return subsumed;
+    }
+
+    // the stored roots having all the features of the tree
+    private int[] findCandidates(Tree tree) {
+        if (tree.features.length == 0) {
+            int[] all = new int[roots.size()];
+            for (int number = 0; number < all.length; number++) all[number] = number;
+            return all;
+        }
+        List<int[]> postings = new ArrayList<>(tree.features.length);
+        for (long feature : tree.features) {
+            int[] posting = rootsByFeature.get(feature);
+            if (posting == null) return new int[0];
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(posting -> posting.length));
+        int[] candidates = postings.get(0);
+        for (int i = 1; i < postings.size() && candidates.length > 0; i++) {
+            int[] posting = postings.get(i);
+            candidates = Arrays.stream(candidates)
+                    .filter(candidate -> Arrays.binarySearch(posting, candidate) >= 0)
+                    .toArray();
+        }
+        return candidates;
+    }
+
+    private static long hash(long path, Node... nodes) {
+        Hasher hasher = HASH.newHasher().putLong(path);
+        for (Node node : nodes) hasher.putString(node.toString(false), StandardCharsets.UTF_8).putByte((byte) 0);
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * The statements of a root and, recursively, of its anonymous objects
+     */
+    private static class Tree {
+
+        private final Map<Node, Set<Node>> objectsByProperty = new HashMap<>();
+        private final Map<Node, List<Tree>> anonymousObjectsByProperty = new HashMap<>();
+        private final Map<Node, Integer> numberOfStatementsByProperty = new HashMap<>();
+        private SubgraphDigest digest;
+        // only for the trees of the roots
+        private long[] features;
+
+        static Tree read(Graph graph, Node root) {
+            Set<Long> features = new HashSet<>();
+            Tree tree = read(graph, root, ROOT_PATH, new HashSet<>(), new HashSet<>(Collections.singleton(root)), features);
+            tree.features = features.stream().mapToLong(Long::longValue).toArray();
+            return tree;
+        }
+
+        /**
+         * @param ancestors the nodes from the root to the node, the node included
+         */
+        private static Tree read(Graph graph, Node node, long path, Set<Triple> triples, Set<Node> ancestors, Set<Long> features) {
+            Tree tree = new Tree();
+            // a set, since anonymous objects reached from more subjects are read for each of them
+            Set<Triple> subtreeTriples = new HashSet<>();
+            ExtendedIterator<Triple> iterator = graph.find(node, Node.ANY, Node.ANY);
+            List<Triple> statements;
+            try {
+                statements = iterator.toList();
+            } finally {
+                iterator.close();
+            }
+            for (Triple triple : statements) {
+                Node property = triple.getPredicate();
+                Node object = triple.getObject();
+                subtreeTriples.add(triple);
+                tree.numberOfStatementsByProperty.merge(property, 1, Integer::sum);
+                features.add(hash(path, property));
+                if (!object.isBlank()) {
+                    tree.objectsByProperty.computeIfAbsent(property, key -> new HashSet<>()).add(object);
+                    features.add(hash(path, property, object));
+                } else if (ancestors.add(object)) {
+                    // as in Models#isSubgraph, an anonymous object shared with other subjects is read for each of them,
+                    // only the ones reached again through a cycle are not
+                    Tree child = read(graph, object, hash(path, property), subtreeTriples, ancestors, features);
+                    ancestors.remove(object);
+                    tree.anonymousObjectsByProperty.computeIfAbsent(property, key -> new ArrayList<>()).add(child);
+                }
+            }
+            tree.digest = SubgraphDigests.digest(subtreeTriples, node);
+            triples.addAll(subtreeTriples);
+            return tree;
+        }
+
+        /**
+         * @param containment whether the trees with the first digest are contained in the trees with the second one, as
+         *                    found so far, since trees with the same digest are isomorphic
+         */
+        boolean isContainedIn(Tree bigger, Map<DigestPair, Boolean> containment) {
+            if (digest.equals(bigger.digest)) return true;
+            DigestPair digests = new DigestPair(digest, bigger.digest);
+            Boolean contained = containment.get(digests);
+            if (contained == null) {
+                contained = isEachStatementContainedIn(bigger, containment);
+                containment.put(digests, contained);
+            }
+            return contained;
+        }
+
+        private boolean isEachStatementContainedIn(Tree bigger, Map<DigestPair, Boolean> containment) {
+            for (Map.Entry<Node, Set<Node>> entry : objectsByProperty.entrySet()) {
+                Set<Node> biggerObjects = bigger.objectsByProperty.get(entry.getKey());
+                if (biggerObjects == null || !biggerObjects.containsAll(entry.getValue())) return false;
+            }
+            for (Map.Entry<Node, List<Tree>> entry : anonymousObjectsByProperty.entrySet()) {
+                // as in Models#isSubgraph, the anonymous object must be the only object of the property
+                List<Tree> biggerObjects = bigger.anonymousObjectsByProperty.get(entry.getKey());
+                if (biggerObjects == null || bigger.numberOfStatementsByProperty.get(entry.getKey()) != 1) return false;
+                for (Tree anonymousObject : entry.getValue())
+                    if (!anonymousObject.isContainedIn(biggerObjects.get(0), containment)) return false;
+            }
+            return true;
+        }
+
+    }
+
+    private static final class DigestPair {
+
+        private final SubgraphDigest smaller;
+        private final SubgraphDigest bigger;
+
+        DigestPair(SubgraphDigest smaller, SubgraphDigest bigger) {
+            this.smaller = smaller;
+            this.bigger = bigger;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof DigestPair)) return false;
+            DigestPair pair = (DigestPair) other;
+            return smaller.equals(pair.smaller) && bigger.equals(pair.bigger);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * smaller.hashCode() + bigger.hashCode();
+        }
+
+    }
+
+}